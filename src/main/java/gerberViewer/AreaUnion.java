@@ -0,0 +1,140 @@
+package gerberViewer;
+
+import java.awt.geom.Area;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Computes the union of many areas with a balanced, parallel, tree reduction. Adding areas one at
+ * a time to a single growing area is slow because every add has to walk the ever more complex
+ * result. Reducing pairwise keeps the operands of each add about the same size. Sorting the areas
+ * along a Z-order (Morton) curve first means neighboring areas are unioned together, so most of
+ * the intermediate results stay small and compact.
+ */
+final class AreaUnion {
+    //Below this many areas a subtree is unioned sequentially rather than split further
+    private static final int SEQUENTIAL_THRESHOLD = 8;
+
+    private AreaUnion() {
+    }
+
+    /**
+     * Computes the union of the specified areas. None of the areas are modified.
+     * @param areas - the areas to union
+     * @param pool - the pool to perform the reduction on
+     * @param showProgress - receives the fraction of the areas unioned so far, may be null
+     * @param cancelled - returns true if the union should be abandoned
+     * @return the union, or null if cancelled
+     */
+    static Area union(List<Area> areas, ForkJoinPool pool, Consumer<Double> showProgress,
+            BooleanSupplier cancelled) {
+        if (areas.isEmpty()) {
+            return new Area();
+        }
+        Area[] sorted = sortByLocality(areas);
+        AtomicInteger count = new AtomicInteger();
+        Consumer<Integer> progress = (n) -> {
+            if (showProgress != null) {
+                showProgress.accept((double) count.addAndGet(n)/sorted.length);
+            }
+        };
+        return pool.invoke(new UnionTask(sorted, 0, sorted.length, progress, cancelled));
+    }
+
+    /**
+     * Sorts the areas by the Morton code of the centers of their bounds
+     */
+    private static Area[] sortByLocality(List<Area> areas) {
+        int n = areas.size();
+        Rectangle2D[] bounds = new Rectangle2D[n];
+        Rectangle2D extent = null;
+        for (int i=0; i<n; i++) {
+            bounds[i] = areas.get(i).getBounds2D();
+            if (extent == null) {
+                extent = (Rectangle2D) bounds[i].clone();
+            }
+            else {
+                extent.add(bounds[i]);
+            }
+        }
+        double sx = extent.getWidth() > 0 ? 65535/extent.getWidth() : 0;
+        double sy = extent.getHeight() > 0 ? 65535/extent.getHeight() : 0;
+        long[] codes = new long[n];
+        Integer[] order = new Integer[n];
+        for (int i=0; i<n; i++) {
+            int x = (int) ((bounds[i].getCenterX() - extent.getMinX())*sx);
+            int y = (int) ((bounds[i].getCenterY() - extent.getMinY())*sy);
+            codes[i] = interleave(x) | (interleave(y) << 1);
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong((Integer i) -> codes[i]));
+        Area[] sorted = new Area[n];
+        for (int i=0; i<n; i++) {
+            sorted[i] = areas.get(order[i]);
+        }
+        return sorted;
+    }
+
+    /**
+     * Spreads the low 16 bits of v so that there is a zero bit between each of them
+     */
+    private static long interleave(int v) {
+        long x = v & 0xFFFF;
+        x = (x | (x << 8)) & 0x00FF00FFL;
+        x = (x | (x << 4)) & 0x0F0F0F0FL;
+        x = (x | (x << 2)) & 0x33333333L;
+        x = (x | (x << 1)) & 0x55555555L;
+        return x;
+    }
+
+    @SuppressWarnings("serial")
+    private static class UnionTask extends RecursiveTask<Area> {
+        private final Area[] areas;
+        private final int start;
+        private final int end;
+        private final Consumer<Integer> progress;
+        private final BooleanSupplier cancelled;
+
+        UnionTask(Area[] areas, int start, int end, Consumer<Integer> progress,
+                BooleanSupplier cancelled) {
+            this.areas = areas;
+            this.start = start;
+            this.end = end;
+            this.progress = progress;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        protected Area compute() {
+            if (cancelled.getAsBoolean()) {
+                return null;
+            }
+            if (end - start <= SEQUENTIAL_THRESHOLD) {
+                Area result = new Area(areas[start]);
+                for (int i=start+1; i<end; i++) {
+                    result.add(areas[i]);
+                }
+                progress.accept(end - start);
+                return result;
+            }
+            int mid = (start + end) >>> 1;
+            UnionTask left = new UnionTask(areas, start, mid, progress, cancelled);
+            UnionTask right = new UnionTask(areas, mid, end, progress, cancelled);
+            right.fork();
+            Area leftArea = left.compute();
+            Area rightArea = right.join();
+            if (leftArea == null || rightArea == null) {
+                return null;
+            }
+            leftArea.add(rightArea);
+            return leftArea;
+        }
+    }
+}
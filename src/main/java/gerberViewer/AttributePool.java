@@ -0,0 +1,118 @@
+package gerberViewer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interns the attributes of the layers of a board. Attribute names and values, lists of values,
+ * attributes and sets of attributes are each stored only once, and each set is given a small
+ * integer id. Since nearly every object of a copper layer repeats the same few
+ * .AperFunction, .N, .P and .C attributes, objects with the same attributes end up sharing a
+ * single attribute set which they refer to by id. Interned strings and attributes can be
+ * compared by identity, and objects with the same attributes by their attribute set ids, rather
+ * than by comparing strings.
+ * <p>
+ * A new pool is made for each board that is loaded and is shared by all of the board's layers,
+ * including any that are later reloaded, so attributes also compare equal across the board's
+ * layers. The pool is only referenced by the board's layers, and their objects' attribute sets,
+ * so it is released along with them. It is safe to use from any thread.
+ */
+final class AttributePool {
+    private final Map<String, String> strings = new HashMap<>();
+    private final Map<List<String>, List<String>> valueLists = new HashMap<>();
+    private final Map<List<Object>, LayerAttribute> attributes = new HashMap<>();
+    private final Map<List<LayerAttribute>, LayerAttributes> attributeSets = new HashMap<>();
+
+    /**
+     * Creates an empty pool, every pool starts with the empty set as id 0
+     */
+    AttributePool() {
+        attributeSets.put(Collections.emptyList(), LayerAttributes.EMPTY);
+    }
+
+    /**
+     * @param string - a string
+     * @return the pool's copy of the string
+     */
+    synchronized String intern(String string) {
+        String interned = strings.putIfAbsent(string, string);
+        return interned != null ? interned : string;
+    }
+
+    /**
+     * @param values - a list of strings
+     * @return the pool's unmodifiable copy of the list whose strings are also interned
+     */
+    synchronized List<String> internValues(List<String> values) {
+        List<String> interned = valueLists.get(values);
+        if (interned == null) {
+            String[] copy = new String[values.size()];
+            for (int i=0; i<copy.length; i++) {
+                copy[i] = intern(values.get(i));
+            }
+            interned = Collections.unmodifiableList(Arrays.asList(copy));
+            valueLists.put(interned, interned);
+        }
+        return interned;
+    }
+
+    /**
+     * @param name - the name of the attribute
+     * @param values - the attribute's values
+     * @param text - how the attribute is displayed
+     * @return the pool's copy of the attribute
+     */
+    synchronized LayerAttribute getAttribute(String name, List<String> values, String text) {
+        name = intern(name);
+        values = internValues(values);
+        text = intern(text);
+        //The parts are all interned so the key can compare them by identity
+        List<Object> key = Arrays.asList(new IdentityKey(name), new IdentityKey(values), new IdentityKey(text));
+        LayerAttribute attribute = attributes.get(key);
+        if (attribute == null) {
+            attribute = new LayerAttribute(name, values, text);
+            attributes.put(key, attribute);
+        }
+        return attribute;
+    }
+
+    /**
+     * @param setAttributes - interned attributes in the order they were defined, no two of them
+     * may have the same name
+     * @return the pool's copy of the set of the attributes
+     */
+    synchronized LayerAttributes getAttributeSet(List<LayerAttribute> setAttributes) {
+        LayerAttributes attributeSet = attributeSets.get(setAttributes);
+        if (attributeSet == null) {
+            List<LayerAttribute> copy = Collections.unmodifiableList(new ArrayList<>(setAttributes));
+            attributeSet = new LayerAttributes(attributeSets.size(), copy);
+            attributeSets.put(copy, attributeSet);
+        }
+        return attributeSet;
+    }
+
+    /**
+     * Wraps an interned object so that it is compared by identity
+     */
+    private static class IdentityKey {
+        private final Object object;
+
+        IdentityKey(Object object) {
+            this.object = object;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof IdentityKey && ((IdentityKey) other).object == object;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(object);
+        }
+    }
+}
@@ -81,4 +81,28 @@ public class ColorScheme {
             default:
         }
     }
+
+    /**
+     * Gets the color used to display a layer
+     * @param function - the layer's .FileFunction
+     * @return the color
+     */
+    Color getFunctionColor(String function) {
+        switch (function) {
+            case "Profile":
+                return substrateColor;
+            case "Copper":
+            case "Anything":
+                return copperColor;
+            case "Plated":
+            case "NonPlated":
+                return backgroundColor;
+            case "Soldermask":
+                return maskColor;
+            case "Legend":
+                return legendColor;
+            default:
+                return null;
+        }
+    }
 }
@@ -0,0 +1,89 @@
+package gerberViewer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+
+/**
+ * The SHA-256 hash of the contents of a Gerber file together with the length and modification
+ * time the file had when it was hashed. A file is hashed before it is parsed and the layer parsed
+ * from it only gets the hash if the file is still unchanged once parsing is done, so snapshots
+ * and cached geometry are always keyed by the contents that were actually parsed. Since the
+ * whole file is read to hash it, its header is read at the same time.
+ */
+class ContentHash {
+    private final File file;
+    private final long length;
+    private final long lastModified;
+    private final String hash;
+    private final GerberHeader header;
+
+    private ContentHash(File file, long length, long lastModified, String hash, GerberHeader header) {
+        this.file = file;
+        this.length = length;
+        this.lastModified = lastModified;
+        this.hash = hash;
+        this.header = header;
+    }
+
+    /**
+     * Hashes the contents of a file and reads its header
+     * @param file - the file
+     * @return the hash
+     * @throws IOException if the file can't be read
+     */
+    static ContentHash of(File file) throws IOException {
+        //Note these first so that a change made while the file is being read is noticed
+        long length = file.length();
+        long lastModified = file.lastModified();
+        MessageDigest digest = GeometryCache.newDigest();
+        byte[] buffer = new byte[GerberHeader.MAX_HEADER_BYTES];
+        GerberHeader header;
+        try (InputStream in = new FileInputStream(file)) {
+            int n = in.readNBytes(buffer, 0, buffer.length);
+            header = GerberHeader.read(file, buffer, n);
+            while (n > 0) {
+                digest.update(buffer, 0, n);
+                n = in.read(buffer);
+            }
+        }
+        return new ContentHash(file, length, lastModified, GeometryCache.toHex(digest.digest()), header);
+    }
+
+    /**
+     * Wraps a hash of contents that can't change, such as those of an entry of an archive that
+     * was hashed as the archive was scanned
+     * @param hash - the SHA-256 hash of the contents as a hexadecimal string
+     * @return the hash
+     */
+    static ContentHash of(String hash) {
+        return new ContentHash(null, 0, 0, hash, null);
+    }
+
+    /**
+     * @return the hash as a hexadecimal string
+     */
+    String getHash() {
+        return hash;
+    }
+
+    /**
+     * @return the header of the file, or null if the hash wasn't made by reading a file
+     */
+    GerberHeader getHeader() {
+        return header;
+    }
+
+    /**
+     * @return the hash if the file's length and modification time are the same as when it was
+     * hashed, otherwise null
+     */
+    String getCurrentHash() {
+        if (file != null && (file.length() != length || file.lastModified() != lastModified)) {
+            return null;
+        }
+        return hash;
+    }
+}
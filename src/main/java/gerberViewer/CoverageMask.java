@@ -0,0 +1,56 @@
+package gerberViewer;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Utilities for working with coverage masks. A coverage mask is a single byte per pixel image
+ * where each pixel holds the fraction (0 to 255) of the pixel that is covered by a layer. Layers
+ * are rendered into masks by filling with white and the masks are later tinted with whatever
+ * color the layer is to be displayed with. This lets the color scheme change without needing to
+ * re-render any geometry.
+ */
+final class CoverageMask {
+    private static final Map<Color, IndexColorModel> tintModels = new ConcurrentHashMap<>();
+
+    private CoverageMask() {
+    }
+
+    /**
+     * Creates a new, completely uncovered, mask
+     * @param width - the width of the mask in pixels
+     * @param height - the height of the mask in pixels
+     * @return the mask
+     */
+    static BufferedImage create(int width, int height) {
+        return new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+    }
+
+    /**
+     * Creates an image that shares the pixels of the mask but displays them in the specified
+     * color with an alpha proportional to the coverage. No pixels are copied so this is cheap
+     * enough to do every time the mask is drawn.
+     * @param mask - the mask to tint
+     * @param color - the color, its alpha is scaled by the coverage of each pixel
+     * @return the tinted image
+     */
+    static BufferedImage tint(BufferedImage mask, Color color) {
+        IndexColorModel colorModel = tintModels.computeIfAbsent(color, (c) -> {
+            byte[] r = new byte[256];
+            byte[] g = new byte[256];
+            byte[] b = new byte[256];
+            byte[] a = new byte[256];
+            for (int i=0; i<256; i++) {
+                r[i] = (byte) c.getRed();
+                g[i] = (byte) c.getGreen();
+                b[i] = (byte) c.getBlue();
+                a[i] = (byte) Math.round(i * c.getAlpha() / 255.0);
+            }
+            return new IndexColorModel(8, 256, r, g, b, a);
+        });
+        return new BufferedImage(colorModel, mask.getRaster(), false, null);
+    }
+}
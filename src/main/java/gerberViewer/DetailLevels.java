@@ -0,0 +1,228 @@
+package gerberViewer;
+
+import java.awt.Shape;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Simplified outlines of the objects of a geometry store at a few levels of detail. Copper pours
+ * and board outlines can have thousands of vertices, and arcs made of many curves, that are far
+ * closer together than a pixel when the board is zoomed out. At each level an outline's curves
+ * are flattened and its vertices are then thinned with the Douglas-Peucker algorithm so that it
+ * never strays from the original by more than the level's tolerance.
+ * <p>
+ * The coarsest level is fine enough to view the whole layer in a window a couple of thousand
+ * pixels across and each finer level has a quarter of the tolerance of the one before it. When
+ * zoomed in past the finest level the full outlines are used. An object's simplified outline is
+ * made the first time it is needed at a level and is then kept for as long as the store is.
+ */
+class DetailLevels {
+    private static final int LEVELS = 5;
+    //Each level's tolerance is this many times that of the next finer level
+    private static final double LEVEL_RATIO = 4;
+    //The tolerance of the coarsest level as a fraction of the largest dimension of the layer
+    private static final double COARSEST_TOLERANCE = 1.0/4000;
+    //Outlines with fewer segments than this are always used as is
+    private static final int MIN_SEGMENTS = 32;
+    //Marks an outline that simplifying didn't make enough smaller to be worth keeping
+    private static final Shape NOT_SIMPLIFIED = new Path2D.Float();
+
+    private final GeometryStore geometry;
+    //In order from the finest level to the coarsest
+    private final double[] tolerances = new double[LEVELS];
+    private final List<AtomicReferenceArray<Shape>> levels = new ArrayList<>();
+
+    /**
+     * @param geometry - the store whose outlines are simplified
+     */
+    DetailLevels(GeometryStore geometry) {
+        this.geometry = geometry;
+        Rectangle2D extent = geometry.getExtent();
+        double tolerance = COARSEST_TOLERANCE*Math.max(extent.getWidth(), extent.getHeight());
+        for (int level=LEVELS-1; level>=0; level--) {
+            tolerances[level] = tolerance;
+            tolerance /= LEVEL_RATIO;
+        }
+        for (int level=0; level<LEVELS; level++) {
+            levels.add(new AtomicReferenceArray<>(geometry.size()));
+        }
+    }
+
+    /**
+     * Gets the outline of an object at the coarsest level of detail that is accurate enough
+     * @param index - the index of the object
+     * @param maxError - the furthest, in object units, the outline may stray from the object
+     * @return the outline, this must not be modified
+     */
+    Shape getShape(int index, double maxError) {
+        int level = getLevel(maxError);
+        if (level < 0 || geometry.getSegmentCount(index) < MIN_SEGMENTS) {
+            return geometry.getPath(index);
+        }
+        AtomicReferenceArray<Shape> shapes = levels.get(level);
+        Shape shape = shapes.get(index);
+        if (shape == null) {
+            //Two tiles may both simplify the same object, but they end up with the same outline
+            shape = simplify(geometry.getPath(index), tolerances[level]);
+            if (countSegments(shape) > 3*geometry.getSegmentCount(index)/4) {
+                shape = NOT_SIMPLIFIED;
+            }
+            shapes.set(index, shape);
+        }
+        return shape != NOT_SIMPLIFIED ? shape : geometry.getPath(index);
+    }
+
+    /**
+     * @param maxError - the largest acceptable tolerance
+     * @return the coarsest level whose tolerance is no more than the maximum, or -1 if there is
+     * none
+     */
+    private int getLevel(double maxError) {
+        for (int level=LEVELS-1; level>=0; level--) {
+            if (tolerances[level] <= maxError) {
+                return level;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Simplifies an outline. Half the tolerance is allowed for flattening curves and the other
+     * half for removing vertices. Sub-paths that would collapse to fewer than three vertices,
+     * such as long slivers narrower than the tolerance, are kept as they are so that they still
+     * show up faintly rather than disappearing.
+     * @param shape - the outline
+     * @param tolerance - the furthest the simplified outline may stray from the original
+     * @return the simplified outline
+     */
+    static Path2D simplify(Shape shape, double tolerance) {
+        PathIterator pathIter = shape.getPathIterator(null, tolerance/2);
+        Path2D simplified = new Path2D.Float(pathIter.getWindingRule());
+        double[] points = new double[64];
+        int n = 0;
+        double[] c = new double[6];
+        while (!pathIter.isDone()) {
+            int segType = pathIter.currentSegment(c);
+            if (segType == PathIterator.SEG_MOVETO || segType == PathIterator.SEG_CLOSE) {
+                appendRing(simplified, points, n, tolerance/2);
+                n = 0;
+            }
+            if (segType != PathIterator.SEG_CLOSE && 
+                    (n == 0 || points[2*n - 2] != c[0] || points[2*n - 1] != c[1])) {
+                if (2*n + 2 > points.length) {
+                    points = Arrays.copyOf(points, 2*points.length);
+                }
+                points[2*n] = c[0];
+                points[2*n + 1] = c[1];
+                n++;
+            }
+            pathIter.next();
+        }
+        appendRing(simplified, points, n, tolerance/2);
+        return simplified;
+    }
+
+    /**
+     * Thins the vertices of a closed ring with the Douglas-Peucker algorithm and appends what is
+     * left to a path. The ring is first split at its first vertex and the vertex furthest from it
+     * so that each half has distinct end points. If thinning would leave fewer than three
+     * vertices the ring is appended unthinned.
+     */
+    private static void appendRing(Path2D path, double[] points, int n, double tolerance) {
+        if (n > 1 && points[0] == points[2*n - 2] && points[1] == points[2*n - 1]) {
+            n--;
+        }
+        if (n < 3) {
+            return;
+        }
+        int far = 0;
+        double farDist = -1;
+        for (int i=1; i<n; i++) {
+            double dist = distanceSq(points, 0, i);
+            if (dist > farDist) {
+                far = i;
+                farDist = dist;
+            }
+        }
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[far] = true;
+        thin(points, n, 0, far, tolerance*tolerance, keep);
+        thin(points, n, far, n, tolerance*tolerance, keep);
+        int kept = 0;
+        for (boolean k : keep) {
+            if (k) {
+                kept++;
+            }
+        }
+        if (kept < 3) {
+            Arrays.fill(keep, true);
+        }
+        path.moveTo(points[0], points[1]);
+        for (int i=1; i<n; i++) {
+            if (keep[i]) {
+                path.lineTo(points[2*i], points[2*i + 1]);
+            }
+        }
+        path.closePath();
+    }
+
+    /**
+     * Marks the vertices strictly between two vertices that must be kept. The vertex index n is
+     * the same as vertex 0. An explicit stack is used since the rings of large pours would
+     * otherwise recurse too deeply.
+     */
+    private static void thin(double[] points, int n, int first, int last, double toleranceSq, boolean[] keep) {
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = first;
+        stack[top++] = last;
+        while (top > 0) {
+            int end = stack[--top];
+            int start = stack[--top];
+            double x1 = points[2*start];
+            double y1 = points[2*start + 1];
+            double x2 = points[2*(end % n)];
+            double y2 = points[2*(end % n) + 1];
+            int worst = -1;
+            double worstDist = toleranceSq;
+            for (int i=start+1; i<end; i++) {
+                double dist = Line2D.ptSegDistSq(x1, y1, x2, y2, points[2*i], points[2*i + 1]);
+                if (dist > worstDist) {
+                    worst = i;
+                    worstDist = dist;
+                }
+            }
+            if (worst >= 0) {
+                keep[worst] = true;
+                if (top + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, 2*stack.length);
+                }
+                stack[top++] = start;
+                stack[top++] = worst;
+                stack[top++] = worst;
+                stack[top++] = end;
+            }
+        }
+    }
+
+    private static double distanceSq(double[] points, int i, int j) {
+        double dx = points[2*j] - points[2*i];
+        double dy = points[2*j + 1] - points[2*i + 1];
+        return dx*dx + dy*dy;
+    }
+
+    private static int countSegments(Shape shape) {
+        int count = 0;
+        for (PathIterator pathIter = shape.getPathIterator(null); !pathIter.isDone(); pathIter.next()) {
+            count++;
+        }
+        return count;
+    }
+}
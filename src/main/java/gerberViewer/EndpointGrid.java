@@ -0,0 +1,160 @@
+package gerberViewer;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A uniform hash grid over the two endpoints of a list of paths that finds the nearest endpoint
+ * to a point. Paths can be removed once they have been matched so that chaining paths end to end
+ * takes close to linear time rather than having to rescan every remaining endpoint at each step.
+ * <p>
+ * Endpoints are identified by 2*pathIdx for the beginning of a path and 2*pathIdx + 1 for the end.
+ */
+class EndpointGrid {
+    private final Point2D[] points;
+    private final boolean[] removed;
+    private int remaining;
+    private final double cellSize;
+    private final Map<Long, List<Integer>> cells = new HashMap<>();
+    private int minCellX = Integer.MAX_VALUE;
+    private int minCellY = Integer.MAX_VALUE;
+    private int maxCellX = Integer.MIN_VALUE;
+    private int maxCellY = Integer.MIN_VALUE;
+
+    /**
+     * Builds the grid
+     * @param beginnings - the beginning point of each path
+     * @param endings - the ending point of each path
+     */
+    EndpointGrid(List<Point2D> beginnings, List<Point2D> endings) {
+        int n = beginnings.size();
+        points = new Point2D[2*n];
+        removed = new boolean[n];
+        remaining = n;
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i=0; i<n; i++) {
+            points[2*i] = beginnings.get(i);
+            points[2*i + 1] = endings.get(i);
+        }
+        for (Point2D pt : points) {
+            minX = Math.min(minX, pt.getX());
+            minY = Math.min(minY, pt.getY());
+            maxX = Math.max(maxX, pt.getX());
+            maxY = Math.max(maxY, pt.getY());
+        }
+        //Size the cells so that there are about as many cells as endpoints
+        double extent = Math.max(maxX - minX, maxY - minY);
+        cellSize = extent > 0 && n > 0 ? extent/Math.ceil(Math.sqrt(2*n)) : 1;
+        for (int id=0; id<points.length; id++) {
+            int cx = cellOf(points[id].getX());
+            int cy = cellOf(points[id].getY());
+            cells.computeIfAbsent(key(cx, cy), (k) -> new ArrayList<>()).add(id);
+            minCellX = Math.min(minCellX, cx);
+            minCellY = Math.min(minCellY, cy);
+            maxCellX = Math.max(maxCellX, cx);
+            maxCellY = Math.max(maxCellY, cy);
+        }
+    }
+
+    private int cellOf(double v) {
+        return (int) Math.floor(v/cellSize);
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return the number of paths that have not been removed
+     */
+    int size() {
+        return remaining;
+    }
+
+    /**
+     * @param pathIdx - the index of the path
+     * @return true if the path has been removed
+     */
+    boolean isRemoved(int pathIdx) {
+        return removed[pathIdx];
+    }
+
+    /**
+     * Removes both endpoints of a path from the grid
+     * @param pathIdx - the index of the path
+     */
+    void remove(int pathIdx) {
+        if (!removed[pathIdx]) {
+            removed[pathIdx] = true;
+            remaining--;
+        }
+    }
+
+    /**
+     * @param id - the id of an endpoint
+     * @return the endpoint's location
+     */
+    Point2D getPoint(int id) {
+        return points[id];
+    }
+
+    /**
+     * Finds the endpoint, of the paths that have not been removed, that is nearest to the
+     * specified point. Ties are broken in favor of beginnings and then of lower path indices.
+     * @param pt - the point
+     * @return the id of the nearest endpoint, or -1 if all paths have been removed
+     */
+    int nearest(Point2D pt) {
+        if (remaining == 0) {
+            return -1;
+        }
+        int cx = cellOf(pt.getX());
+        int cy = cellOf(pt.getY());
+        //No endpoint lies further out than this many rings
+        int maxRing = Math.max(Math.max(Math.abs(cx - minCellX), Math.abs(maxCellX - cx)),
+                Math.max(Math.abs(cy - minCellY), Math.abs(maxCellY - cy)));
+        int best = -1;
+        double bestDist = Double.POSITIVE_INFINITY;
+        for (int ring=0; ring<=maxRing; ring++) {
+            //Everything in this ring is at least ring-1 cells away
+            if (best >= 0 && bestDist < (ring - 1)*cellSize) {
+                break;
+            }
+            for (int x=cx-ring; x<=cx+ring; x++) {
+                for (int y=cy-ring; y<=cy+ring; y++) {
+                    if (Math.abs(x - cx) != ring && Math.abs(y - cy) != ring) {
+                        continue;
+                    }
+                    List<Integer> cell = cells.get(key(x, y));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (int id : cell) {
+                        if (removed[id/2]) {
+                            continue;
+                        }
+                        double dist = pt.distance(points[id]);
+                        if (dist < bestDist || (dist == bestDist && isPreferred(id, best))) {
+                            best = id;
+                            bestDist = dist;
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private static boolean isPreferred(int id, int other) {
+        if (id%2 != other%2) {
+            return id%2 == 0;
+        }
+        return id < other;
+    }
+}
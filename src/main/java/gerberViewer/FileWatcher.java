@@ -0,0 +1,108 @@
+package gerberViewer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watches a set of files for changes. Tools that generate Gerber files often write them in
+ * several pieces, or delete and recreate them, so a file is only reported as changed once it
+ * has stopped changing for a while.
+ */
+class FileWatcher implements Closeable {
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private final Set<File> files = new HashSet<>();
+    private final long settleMillis;
+    private final Consumer<File> fileChanged;
+
+    /**
+     * Starts watching files
+     * @param watchedFiles - the files to watch
+     * @param settleMillis - how long a file must go unchanged before it is reported
+     * @param fileChanged - receives each file that has changed, this is called on the watcher's
+     * own thread
+     * @throws IOException if the files can't be watched
+     */
+    FileWatcher(Collection<File> watchedFiles, long settleMillis, Consumer<File> fileChanged) throws IOException {
+        this.settleMillis = settleMillis;
+        this.fileChanged = fileChanged;
+        watchService = FileSystems.getDefault().newWatchService();
+        Set<Path> registered = new HashSet<>();
+        for (File file : watchedFiles) {
+            File absolute = file.getAbsoluteFile();
+            files.add(absolute);
+            Path directory = absolute.getParentFile().toPath();
+            if (registered.add(directory)) {
+                WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+                directories.put(key, directory);
+            }
+        }
+        Thread thread = new Thread(() -> watch(), "GerberViewer file watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void watch() {
+        Map<File, Long> pending = new HashMap<>();
+        try {
+            while (true) {
+                WatchKey key = pending.isEmpty() ? watchService.take() :
+                    watchService.poll(settleMillis, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    Path directory = directories.get(key);
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (directory != null && event.context() instanceof Path) {
+                            File file = directory.resolve((Path) event.context()).toFile();
+                            if (files.contains(file)) {
+                                pending.put(file, System.currentTimeMillis());
+                            }
+                        }
+                    }
+                    key.reset();
+                }
+                long now = System.currentTimeMillis();
+                Iterator<Map.Entry<File, Long>> iter = pending.entrySet().iterator();
+                while (iter.hasNext()) {
+                    Map.Entry<File, Long> entry = iter.next();
+                    if (now - entry.getValue() >= settleMillis && entry.getKey().isFile()) {
+                        iter.remove();
+                        fileChanged.accept(entry.getKey());
+                    }
+                }
+            }
+        }
+        catch (InterruptedException | ClosedWatchServiceException ex) {
+            //The watcher has been closed
+        }
+    }
+
+    /**
+     * Stops watching the files
+     */
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        }
+        catch (IOException ex) {
+            //Nothing more can be done
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package gerberViewer;
+
+import java.awt.geom.Area;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A persistent, on-disk, cache of geometry composed from Gerber layers, such as the board
+ * substrate, the solder masks, and the clipped silkscreens. Each entry is keyed by the kind of
+ * geometry, the side of the board, and the content hashes of the layers it was composed from so
+ * an entry can never be returned for files that have since changed. Geometry composed from a
+ * layer whose content hash isn't known is never cached. Each entry records the files it was
+ * composed from so that entries whose files have changed or been deleted can be found and
+ * evicted.
+ * <p>
+ * Areas are stored as the segments of their paths in the compact binary format of PathCodec.
+ */
+class GeometryCache {
+    private static final int MAGIC = 0x47564743; //"GVGC"
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".geo";
+
+    private final File directory;
+    private final long maxBytes;
+
+    /**
+     * Creates a geometry cache
+     * @param directory - the directory to store the cache in, it is created if necessary
+     * @param maxBytes - the maximum size of the cache, the least recently used entries are evicted
+     * to keep the cache within this size
+     */
+    GeometryCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Loads an entry from the cache
+     * @param kind - the kind of geometry
+     * @param side - the side of the board the geometry is for
+     * @param sources - the layers the geometry was composed from
+     * @return the areas of the entry, or null if the cache has no such entry
+     */
+    List<Area> load(String kind, String side, GerberLayer... sources) {
+        String[] hashes = hashesOf(sources);
+        if (hashes == null) {
+            return null;
+        }
+        File entry = entryFile(kind, side, hashes);
+        if (!entry.isFile()) {
+            return null;
+        }
+        List<Area> areas = null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(entry)))) {
+            if (readHeaderMatches(in, kind, side, hashes)) {
+                int areaCount = in.readInt();
+                areas = new ArrayList<>(areaCount);
+                for (int i=0; i<areaCount; i++) {
+                    areas.add(new Area(PathCodec.read(in)));
+                }
+            }
+        }
+        catch (IOException ex) {
+            //The entry is corrupt
+            areas = null;
+        }
+        if (areas == null) {
+            entry.delete();
+            return null;
+        }
+        //Mark the entry as recently used
+        entry.setLastModified(System.currentTimeMillis());
+        return areas;
+    }
+
+    /**
+     * Stores an entry in the cache replacing any existing entry with the same key. Nothing is
+     * stored if the content hash of any of the layers isn't known.
+     * @param kind - the kind of geometry
+     * @param side - the side of the board the geometry is for
+     * @param areas - the areas to store
+     * @param sources - the layers the geometry was composed from
+     * @throws IOException if the entry can't be written
+     */
+    void store(String kind, String side, List<Area> areas, GerberLayer... sources) throws IOException {
+        String[] hashes = hashesOf(sources);
+        if (hashes == null) {
+            return;
+        }
+        directory.mkdirs();
+        File entry = entryFile(kind, side, hashes);
+        //Write to a temporary file first so that a partially written entry is never seen
+        File temp = File.createTempFile("entry", ".tmp", directory);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(kind);
+                out.writeUTF(side);
+                out.writeInt(sources.length);
+                for (int i=0; i<sources.length; i++) {
+                    out.writeUTF(sources[i].getGerberFile().getAbsolutePath());
+                    out.writeUTF(hashes[i]);
+                }
+                out.writeInt(areas.size());
+                for (Area area : areas) {
+                    PathCodec.write(out, area);
+                }
+            }
+            Files.move(temp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            temp.delete();
+        }
+        trim();
+    }
+
+    /**
+     * Evicts every entry whose source files have changed or no longer exist as well as any entry
+     * that can't be read
+     * @return the number of entries evicted
+     */
+    int evictStale() {
+        File[] entries = directory.listFiles((dir, name) -> name.endsWith(SUFFIX) || name.endsWith(".tmp"));
+        if (entries == null) {
+            return 0;
+        }
+        int evicted = 0;
+        for (File entry : entries) {
+            boolean stale;
+            if (entry.getName().endsWith(".tmp")) {
+                //Left behind by a crash while storing an entry
+                stale = entry.lastModified() < System.currentTimeMillis() - 60*60*1000;
+            }
+            else {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(entry)))) {
+                    stale = !sourcesUnchanged(in);
+                }
+                catch (IOException ex) {
+                    stale = true;
+                }
+            }
+            if (stale && entry.delete()) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    private boolean sourcesUnchanged(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            return false;
+        }
+        in.readUTF();
+        in.readUTF();
+        int sourceCount = in.readInt();
+        for (int i=0; i<sourceCount; i++) {
+            File source = new File(in.readUTF());
+            String hash = in.readUTF();
+            if (!source.isFile()) {
+                //A file inside an archive can't be rehashed without decompressing it so the entry
+                //is kept for as long as the archive exists
+                if (!isInArchive(source)) {
+                    return false;
+                }
+            }
+            else if (!ContentHash.of(source).getHash().equals(hash)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isInArchive(File source) {
+        File parent = source.getParentFile();
+        while (parent != null && !parent.exists()) {
+            parent = parent.getParentFile();
+        }
+        return parent != null && parent.isFile();
+    }
+
+    private boolean readHeaderMatches(DataInputStream in, String kind, String side, String[] hashes)
+            throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(kind) ||
+                !in.readUTF().equals(side) || in.readInt() != hashes.length) {
+            return false;
+        }
+        for (int i=0; i<hashes.length; i++) {
+            in.readUTF();
+            if (!in.readUTF().equals(hashes[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Evicts the least recently used entries until the cache is within its size limit
+     */
+    private void trim() {
+        File[] entries = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (entries == null) {
+            return;
+        }
+        long total = 0;
+        for (File entry : entries) {
+            total += entry.length();
+        }
+        Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+        for (int i=0; i<entries.length && total > maxBytes; i++) {
+            long length = entries[i].length();
+            if (entries[i].delete()) {
+                total -= length;
+            }
+        }
+    }
+
+    private File entryFile(String kind, String side, String[] hashes) {
+        MessageDigest digest = newDigest();
+        digest.update(kind.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(side.getBytes(StandardCharsets.UTF_8));
+        for (String hash : hashes) {
+            digest.update((byte) 0);
+            digest.update(hash.getBytes(StandardCharsets.UTF_8));
+        }
+        return new File(directory, toHex(digest.digest()) + SUFFIX);
+    }
+
+    /**
+     * @return the content hashes of the layers, or null if any of them isn't known
+     */
+    private static String[] hashesOf(GerberLayer[] sources) {
+        String[] hashes = new String[sources.length];
+        for (int i=0; i<sources.length; i++) {
+            hashes[i] = sources[i].getContentHash();
+            if (hashes[i] == null) {
+                return null;
+            }
+        }
+        return hashes;
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException ex) {
+            //Every Java platform is required to support SHA-256
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
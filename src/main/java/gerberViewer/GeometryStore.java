@@ -0,0 +1,460 @@
+package gerberViewer;
+
+import java.awt.Shape;
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact storage for the outlines of the objects of a layer. Rather than keeping an Area, with
+ * its many small curve objects, for every object, the segments of all the objects' outlines are
+ * kept in a few flat arrays: one of segment types and one of coordinates, with each object's
+ * segments and coordinates found by offsets into them. Coordinates are quantized to 32 bit
+ * integers at the resolution of the Gerber file's coordinate format. Vertices given in the file
+ * already lie on that grid and are kept exactly, but the control points of the curves that
+ * approximate arcs and circles generally don't, and are each moved by up to half a step along
+ * each axis. Since every point of a curve is a weighted average of its control points, no point
+ * of an outline moves by more than half the diagonal of a step, which is less than the file
+ * itself can resolve.
+ * <p>
+ * An object's outline can be filled directly, with the same result as filling its Area to
+ * within that error, and an Area is only created when one is actually needed for geometric
+ * operations.
+ * <p>
+ * Objects whose outlines are identical apart from their position, such as the flashes of the
+ * same aperture, are given the same shape id. Since the coordinates are integers, outlines are
+ * compared exactly.
+ */
+class GeometryStore {
+    //Outlines with more segments than this are unlikely to be repeated so aren't compared
+    private static final int MAX_SHAPE_SEGMENTS = 256;
+
+    private double resolution;
+    private int count = 0;
+    private int segCount = 0;
+    private int coordCount = 0;
+    private int[] segStarts = new int[17];
+    private int[] coordStarts = new int[17];
+    private byte[] windingRules = new byte[16];
+    private int[] bounds = new int[64];
+    private byte[] segTypes = new byte[256];
+    private int[] coords = new int[512];
+    private int[] shapeIds;
+    private int[] shapeInstances;
+    private volatile DetailLevels detailLevels;
+
+    /**
+     * Creates an empty store
+     * @param resolution - the size, in object units, of one step of the quantized coordinates
+     * @param extent - the bounds of everything that will be added, if null, the resolution is
+     * used as is, otherwise the resolution is coarsened if necessary so that every coordinate
+     * fits in 32 bits
+     */
+    GeometryStore(double resolution, Rectangle2D extent) {
+        if (extent != null) {
+            double maxAbs = Math.max(Math.max(Math.abs(extent.getMinX()), Math.abs(extent.getMaxX())),
+                    Math.max(Math.abs(extent.getMinY()), Math.abs(extent.getMaxY())));
+            //Leave room for the control points of curves that bulge a little past the bounds
+            while (2*maxAbs/resolution > Integer.MAX_VALUE) {
+                resolution *= 10;
+            }
+        }
+        this.resolution = resolution;
+    }
+
+    /**
+     * Adds an object's outline to the store
+     * @param shape - the outline
+     * @return the index of the object
+     */
+    int add(Shape shape) {
+        ensureObjectCapacity(count + 1);
+        PathIterator pathIter = shape.getPathIterator(null);
+        windingRules[count] = (byte) pathIter.getWindingRule();
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        double[] c = new double[6];
+        while (!pathIter.isDone()) {
+            int segType = pathIter.currentSegment(c);
+            int n = PathCodec.coordCount(segType);
+            ensureSegmentCapacity(segCount + 1, coordCount + n);
+            segTypes[segCount++] = (byte) segType;
+            for (int j=0; j<n; j+=2) {
+                int x = quantize(c[j]);
+                int y = quantize(c[j+1]);
+                coords[coordCount++] = x;
+                coords[coordCount++] = y;
+                minX = Math.min(minX, x);
+                minY = Math.min(minY, y);
+                maxX = Math.max(maxX, x);
+                maxY = Math.max(maxY, y);
+            }
+            pathIter.next();
+        }
+        if (minX > maxX) {
+            //An empty outline
+            minX = minY = maxX = maxY = 0;
+        }
+        bounds[4*count] = minX;
+        bounds[4*count + 1] = minY;
+        bounds[4*count + 2] = maxX;
+        bounds[4*count + 3] = maxY;
+        count++;
+        segStarts[count] = segCount;
+        coordStarts[count] = coordCount;
+        return count - 1;
+    }
+
+    private int quantize(double value) {
+        return (int) Math.round(value/resolution);
+    }
+
+    private void ensureObjectCapacity(int n) {
+        if (n + 1 > segStarts.length) {
+            int capacity = Math.max(n + 1, 2*segStarts.length);
+            segStarts = Arrays.copyOf(segStarts, capacity);
+            coordStarts = Arrays.copyOf(coordStarts, capacity);
+            windingRules = Arrays.copyOf(windingRules, capacity);
+            bounds = Arrays.copyOf(bounds, 4*capacity);
+        }
+    }
+
+    private void ensureSegmentCapacity(int segs, int coordinates) {
+        if (segs > segTypes.length) {
+            segTypes = Arrays.copyOf(segTypes, Math.max(segs, 2*segTypes.length));
+        }
+        if (coordinates > coords.length) {
+            coords = Arrays.copyOf(coords, Math.max(coordinates, 2*coords.length));
+        }
+    }
+
+    /**
+     * Releases the unused capacity of the arrays and finds the objects with repeated shapes, this
+     * must be called once everything has been added
+     */
+    void trim() {
+        segStarts = Arrays.copyOf(segStarts, count + 1);
+        coordStarts = Arrays.copyOf(coordStarts, count + 1);
+        windingRules = Arrays.copyOf(windingRules, count);
+        bounds = Arrays.copyOf(bounds, 4*count);
+        segTypes = Arrays.copyOf(segTypes, segCount);
+        coords = Arrays.copyOf(coords, coordCount);
+        indexShapes();
+    }
+
+    /**
+     * Gives each object a shape id, objects whose outlines only differ by a translation share
+     * the same id
+     */
+    private void indexShapes() {
+        shapeIds = new int[count];
+        Map<ShapeKey, Integer> ids = new HashMap<>();
+        int shapeCount = 0;
+        for (int i=0; i<count; i++) {
+            if (segStarts[i + 1] - segStarts[i] > MAX_SHAPE_SEGMENTS) {
+                shapeIds[i] = shapeCount++;
+                continue;
+            }
+            Integer id = ids.putIfAbsent(new ShapeKey(i), shapeCount);
+            if (id == null) {
+                shapeIds[i] = shapeCount++;
+            }
+            else {
+                shapeIds[i] = id;
+            }
+        }
+        shapeInstances = new int[shapeCount];
+        for (int i=0; i<count; i++) {
+            shapeInstances[shapeIds[i]]++;
+        }
+    }
+
+    /**
+     * An object's outline relative to the minimum corner of its bounds
+     */
+    private class ShapeKey {
+        private final int index;
+        private final int hash;
+
+        ShapeKey(int index) {
+            this.index = index;
+            int h = windingRules[index];
+            for (int i=segStarts[index]; i<segStarts[index + 1]; i++) {
+                h = 31*h + segTypes[i];
+            }
+            int originX = bounds[4*index];
+            int originY = bounds[4*index + 1];
+            for (int k=coordStarts[index]; k<coordStarts[index + 1]; k+=2) {
+                h = 31*h + coords[k] - originX;
+                h = 31*h + coords[k+1] - originY;
+            }
+            hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ShapeKey)) {
+                return false;
+            }
+            int other = ((ShapeKey) obj).index;
+            int segLength = segStarts[index + 1] - segStarts[index];
+            int coordLength = coordStarts[index + 1] - coordStarts[index];
+            if (windingRules[index] != windingRules[other] || 
+                    segStarts[other + 1] - segStarts[other] != segLength ||
+                    coordStarts[other + 1] - coordStarts[other] != coordLength) {
+                return false;
+            }
+            for (int i=0; i<segLength; i++) {
+                if (segTypes[segStarts[index] + i] != segTypes[segStarts[other] + i]) {
+                    return false;
+                }
+            }
+            int dx = bounds[4*other] - bounds[4*index];
+            int dy = bounds[4*other + 1] - bounds[4*index + 1];
+            int k = coordStarts[index];
+            int otherK = coordStarts[other];
+            for (int j=0; j<coordLength; j+=2) {
+                if (coords[k + j] + dx != coords[otherK + j] || coords[k + j + 1] + dy != coords[otherK + j + 1]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @return the number of objects in the store
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * @return the size, in object units, of one step of the quantized coordinates
+     */
+    double getResolution() {
+        return resolution;
+    }
+
+    /**
+     * Gets the outline of an object. Filling the outline gives the same result as filling the
+     * object's Area, to within the quantization error, but is far cheaper to construct.
+     * @param index - the index of the object
+     * @return a new path of the outline
+     */
+    Path2D getPath(int index) {
+        int segStart = segStarts[index];
+        int segEnd = segStarts[index + 1];
+        Path2D path = new Path2D.Double(windingRules[index], segEnd - segStart);
+        double r = resolution;
+        int k = coordStarts[index];
+        for (int i=segStart; i<segEnd; i++) {
+            switch (segTypes[i]) {
+                case PathIterator.SEG_MOVETO:
+                    path.moveTo(r*coords[k], r*coords[k+1]);
+                    k += 2;
+                    break;
+                case PathIterator.SEG_LINETO:
+                    path.lineTo(r*coords[k], r*coords[k+1]);
+                    k += 2;
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    path.quadTo(r*coords[k], r*coords[k+1], r*coords[k+2], r*coords[k+3]);
+                    k += 4;
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    path.curveTo(r*coords[k], r*coords[k+1], r*coords[k+2], r*coords[k+3],
+                            r*coords[k+4], r*coords[k+5]);
+                    k += 6;
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    path.closePath();
+                    break;
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Gets the outline of an object simplified as much as possible without it straying from the
+     * object by more than a given distance. The simplified outlines are made the first time
+     * they are needed and are then kept.
+     * @param index - the index of the object
+     * @param maxError - the furthest, in object units, the outline may stray from the object
+     * @return the outline, this must not be modified
+     */
+    Shape getPath(int index, double maxError) {
+        DetailLevels levels = detailLevels;
+        if (levels == null) {
+            synchronized (this) {
+                if (detailLevels == null) {
+                    detailLevels = new DetailLevels(this);
+                }
+                levels = detailLevels;
+            }
+        }
+        return levels.getShape(index, maxError);
+    }
+
+    /**
+     * Creates an Area for an object. This is expensive so it should only be done when the
+     * object takes part in geometric operations.
+     * @param index - the index of the object
+     * @return a new Area that the caller is free to modify
+     */
+    Area getArea(int index) {
+        return new Area(getPath(index));
+    }
+
+    /**
+     * @param index - the index of the object
+     * @return the bounds of the object's outline including the control points of any curves
+     */
+    Rectangle2D getBounds(int index) {
+        double r = resolution;
+        return new Rectangle2D.Double(r*bounds[4*index], r*bounds[4*index + 1],
+                r*(bounds[4*index + 2] - bounds[4*index]), r*(bounds[4*index + 3] - bounds[4*index + 1]));
+    }
+
+    /**
+     * @param index - the index of the object
+     * @return the number of segments in the object's outline
+     */
+    int getSegmentCount(int index) {
+        return segStarts[index + 1] - segStarts[index];
+    }
+
+    /**
+     * @return the bounds of the outlines of all the objects
+     */
+    Rectangle2D getExtent() {
+        if (count == 0) {
+            return new Rectangle2D.Double();
+        }
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int i=0; i<count; i++) {
+            minX = Math.min(minX, bounds[4*i]);
+            minY = Math.min(minY, bounds[4*i + 1]);
+            maxX = Math.max(maxX, bounds[4*i + 2]);
+            maxY = Math.max(maxY, bounds[4*i + 3]);
+        }
+        double r = resolution;
+        return new Rectangle2D.Double(r*minX, r*minY, r*((long) maxX - minX), r*((long) maxY - minY));
+    }
+
+    /**
+     * @param index - the index of the object
+     * @return the id of the object's shape, objects whose outlines only differ by a translation
+     * have the same shape id
+     */
+    int getShapeId(int index) {
+        return shapeIds[index];
+    }
+
+    /**
+     * @param shapeId - the id of a shape
+     * @return the number of objects with the shape
+     */
+    int getShapeInstances(int shapeId) {
+        return shapeInstances[shapeId];
+    }
+
+    /**
+     * Gets the x coordinate of an object's origin. The outline of an object relative to its
+     * origin is the same for every object with the same shape.
+     * @param index - the index of the object
+     * @return the x coordinate of the origin
+     */
+    double getOriginX(int index) {
+        return resolution*bounds[4*index];
+    }
+
+    /**
+     * @param index - the index of the object
+     * @return the y coordinate of the object's origin
+     */
+    double getOriginY(int index) {
+        return resolution*bounds[4*index + 1];
+    }
+
+    /**
+     * @return the approximate number of bytes the store occupies
+     */
+    long sizeInBytes() {
+        return 4L*segStarts.length + 4L*coordStarts.length + windingRules.length + 4L*bounds.length +
+                segTypes.length + 4L*coords.length + 4L*shapeIds.length + 4L*shapeInstances.length;
+    }
+
+    /**
+     * Writes the store in a form that can be read back with {@link #read(ByteBuffer)}
+     * @param out - where to write the store
+     * @throws IOException if the store can't be written
+     */
+    void write(DataOutputStream out) throws IOException {
+        out.writeDouble(resolution);
+        out.writeInt(count);
+        out.writeInt(segCount);
+        out.writeInt(coordCount);
+        for (int i=0; i<count; i++) {
+            out.writeByte(windingRules[i]);
+        }
+        for (int i=0; i<=count; i++) {
+            out.writeInt(segStarts[i]);
+            out.writeInt(coordStarts[i]);
+        }
+        for (int i=0; i<4*count; i++) {
+            out.writeInt(bounds[i]);
+        }
+        out.write(segTypes, 0, segCount);
+        for (int i=0; i<coordCount; i++) {
+            out.writeInt(coords[i]);
+        }
+    }
+
+    /**
+     * Reads a store written by {@link #write(DataOutputStream)}
+     * @param in - the buffer to read the store from, it must be big-endian
+     * @return the store
+     */
+    static GeometryStore read(ByteBuffer in) {
+        GeometryStore store = new GeometryStore(in.getDouble(), null);
+        store.count = in.getInt();
+        store.segCount = in.getInt();
+        store.coordCount = in.getInt();
+        store.windingRules = new byte[store.count];
+        in.get(store.windingRules);
+        store.segStarts = new int[store.count + 1];
+        store.coordStarts = new int[store.count + 1];
+        for (int i=0; i<=store.count; i++) {
+            store.segStarts[i] = in.getInt();
+            store.coordStarts[i] = in.getInt();
+        }
+        store.bounds = new int[4*store.count];
+        in.asIntBuffer().get(store.bounds);
+        in.position(in.position() + 4*store.bounds.length);
+        store.segTypes = new byte[store.segCount];
+        in.get(store.segTypes);
+        store.coords = new int[store.coordCount];
+        in.asIntBuffer().get(store.coords);
+        in.position(in.position() + 4*store.coords.length);
+        store.indexShapes();
+        return store;
+    }
+}
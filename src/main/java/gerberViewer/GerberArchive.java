@@ -0,0 +1,175 @@
+package gerberViewer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A zip archive of Gerber files, such as the packages sent by board fabricators. The Gerber files
+ * may be anywhere in the archive's directory tree. Each Gerber file is identified by a path that
+ * continues on from the path of the archive itself, for example board.zip/gerbers/board-F_Cu.gbr,
+ * which can never be confused with a file that actually exists.
+ * <p>
+ * Scanning an archive decompresses its entries in parallel, streaming each one through a SHA-256
+ * digest while keeping only its header, so nothing is written to disk and memory use doesn't
+ * depend on the size of the archive.
+ */
+class GerberArchive {
+    private final File archiveFile;
+    private final List<GerberHeader> headers = new ArrayList<>();
+    private final Map<File, String> entryNames = new HashMap<>();
+    private final Map<File, String> hashes = new HashMap<>();
+
+    private static class ScannedEntry {
+        GerberHeader header;
+        String hash;
+    }
+
+    private GerberArchive(File archiveFile) {
+        this.archiveFile = archiveFile;
+    }
+
+    /**
+     * Scans the Gerber files in an archive
+     * @param archiveFile - the archive
+     * @param executor - the executor to decompress the entries on
+     * @return the archive
+     * @throws IOException if the archive can't be read
+     */
+    static GerberArchive scan(File archiveFile, Executor executor) throws IOException {
+        GerberArchive archive = new GerberArchive(archiveFile);
+        try (ZipFile zip = new ZipFile(archiveFile)) {
+            List<ZipEntry> entries = new ArrayList<>();
+            Enumeration<? extends ZipEntry> e = zip.entries();
+            while (e.hasMoreElements()) {
+                ZipEntry entry = e.nextElement();
+                if (!entry.isDirectory() && entry.getName().toLowerCase().endsWith(".gbr")) {
+                    entries.add(entry);
+                }
+            }
+            Collections.sort(entries, Comparator.comparing(ZipEntry::getName));
+
+            //Each entry gets its own inflater so the entries are decompressed in parallel
+            List<CompletableFuture<ScannedEntry>> scans = new ArrayList<>();
+            for (ZipEntry entry : entries) {
+                File file = new File(archiveFile, entry.getName());
+                scans.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return scanEntry(zip, entry, file);
+                    }
+                    catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                }, executor));
+            }
+            for (int i=0; i<entries.size(); i++) {
+                ScannedEntry scanned;
+                try {
+                    scanned = scans.get(i).join();
+                }
+                catch (CompletionException ex) {
+                    if (ex.getCause() instanceof UncheckedIOException) {
+                        throw ((UncheckedIOException) ex.getCause()).getCause();
+                    }
+                    throw ex;
+                }
+                archive.headers.add(scanned.header);
+                archive.entryNames.put(scanned.header.getFile(), entries.get(i).getName());
+                archive.hashes.put(scanned.header.getFile(), scanned.hash);
+            }
+        }
+        return archive;
+    }
+
+    /**
+     * Decompresses an entry, hashing all of it and keeping just its header
+     */
+    private static ScannedEntry scanEntry(ZipFile zip, ZipEntry entry, File file) throws IOException {
+        MessageDigest digest = GeometryCache.newDigest();
+        byte[] leading = new byte[GerberHeader.MAX_HEADER_BYTES];
+        int leadingLength = 0;
+        byte[] buffer = new byte[65536];
+        try (InputStream in = zip.getInputStream(entry)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+                if (leadingLength < leading.length) {
+                    int count = Math.min(n, leading.length - leadingLength);
+                    System.arraycopy(buffer, 0, leading, leadingLength, count);
+                    leadingLength += count;
+                }
+            }
+        }
+        ScannedEntry scanned = new ScannedEntry();
+        scanned.header = GerberHeader.read(file, leading, leadingLength);
+        scanned.hash = GeometryCache.toHex(digest.digest());
+        return scanned;
+    }
+
+    /**
+     * @return the archive file
+     */
+    File getArchiveFile() {
+        return archiveFile;
+    }
+
+    /**
+     * @return the headers of the Gerber files in the archive, ordered by their paths
+     */
+    List<GerberHeader> getHeaders() {
+        return Collections.unmodifiableList(headers);
+    }
+
+    /**
+     * @param file - a Gerber file in the archive
+     * @return the SHA-256 hash of the file's contents as a hexadecimal string
+     */
+    String getHash(File file) {
+        return hashes.get(file);
+    }
+
+    /**
+     * Extracts a Gerber file from the archive to a temporary file. This is only needed for files
+     * that must be parsed since a GerberFileReader can only read from a file. The caller should
+     * delete the temporary file once it is no longer needed.
+     * @param file - the Gerber file in the archive
+     * @return the temporary file
+     * @throws IOException if the file can't be extracted or if it has changed since the archive
+     * was scanned
+     */
+    File extract(File file) throws IOException {
+        File temp = File.createTempFile("gerber", ".gbr");
+        temp.deleteOnExit();
+        MessageDigest digest = GeometryCache.newDigest();
+        try (ZipFile zip = new ZipFile(archiveFile);
+                InputStream in = new DigestInputStream(zip.getInputStream(zip.getEntry(entryNames.get(file))), digest)) {
+            Files.copy(in, temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            //The file's hash must be of the contents that are actually parsed
+            if (!GeometryCache.toHex(digest.digest()).equals(hashes.get(file))) {
+                throw new IOException(file + " has changed since " + archiveFile.getName() + " was scanned");
+            }
+        }
+        catch (IOException ex) {
+            temp.delete();
+            throw ex;
+        }
+        return temp;
+    }
+}
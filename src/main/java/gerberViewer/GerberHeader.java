@@ -0,0 +1,178 @@
+package gerberViewer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The file attributes (%TF...*%) and coordinate format (%FS...*%) found in the header of a
+ * Gerber file. Only the leading part of the file is read, up to the first aperture definition or
+ * operation, so this is far cheaper than creating a GerberFileReader when all that is needed is to
+ * decide whether a file belongs to a board.
+ */
+class GerberHeader {
+    //File attributes are expected to come first so there is no need to look any further than this
+    static final int MAX_HEADER_BYTES = 64*1024;
+
+    private final File file;
+    private final Map<String, List<String>> attributes = new LinkedHashMap<>();
+    private int coordinateDecimals = -1;
+
+    private GerberHeader(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Reads the header of a Gerber file
+     * @param file - the file
+     * @return the header
+     * @throws IOException if the file can't be read
+     */
+    static GerberHeader read(File file) throws IOException {
+        GerberHeader header = new GerberHeader(file);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            int length = (int) Math.min(channel.size(), MAX_HEADER_BYTES);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            header.parse(buffer, length);
+        }
+        return header;
+    }
+
+    /**
+     * Reads the header of a Gerber file whose leading bytes have already been read, such as an
+     * entry of an archive
+     * @param file - the file the bytes were read from
+     * @param bytes - the leading bytes of the file
+     * @param length - the number of leading bytes, only the first MAX_HEADER_BYTES are examined
+     * @return the header
+     */
+    static GerberHeader read(File file, byte[] bytes, int length) {
+        GerberHeader header = new GerberHeader(file);
+        header.parse(ByteBuffer.wrap(bytes), Math.min(length, MAX_HEADER_BYTES));
+        return header;
+    }
+
+    private void parse(ByteBuffer buffer, int length) {
+        int i = 0;
+        while (i < length) {
+            byte b = buffer.get(i);
+            if (b == '%') {
+                //An extended command, find its end
+                int end = indexOf(buffer, length, i + 1, (byte) '%');
+                if (end < 0) {
+                    return;
+                }
+                int start = i + 1;
+                if (end - start >= 2) {
+                    String code = new String(new byte[] {buffer.get(start), buffer.get(start + 1)}, StandardCharsets.US_ASCII);
+                    if (code.equals("TF")) {
+                        addAttribute(buffer, start + 2, end);
+                    }
+                    else if (code.equals("FS")) {
+                        parseFormat(buffer, start + 2, end);
+                    }
+                    else if (code.equals("AD") || code.equals("AM") || code.equals("TA") || code.equals("TO")) {
+                        //The body of the file has started
+                        return;
+                    }
+                }
+                i = end + 1;
+            }
+            else if (b == 'D' || b == 'X' || b == 'Y' || b == 'I' || b == 'J') {
+                //An operation so the body of the file has started
+                return;
+            }
+            else if (b == 'G') {
+                //Skip over the word, G04 comments in particular may contain anything
+                int end = indexOf(buffer, length, i + 1, (byte) '*');
+                if (end < 0) {
+                    return;
+                }
+                i = end + 1;
+            }
+            else {
+                i++;
+            }
+        }
+    }
+
+    private void addAttribute(ByteBuffer buffer, int start, int end) {
+        //The attribute is terminated by an asterisk just before the closing percent sign
+        int stop = end;
+        while (stop > start && (buffer.get(stop - 1) == '*' || Character.isWhitespace(buffer.get(stop - 1)))) {
+            stop--;
+        }
+        byte[] bytes = new byte[stop - start];
+        for (int j=0; j<bytes.length; j++) {
+            bytes[j] = buffer.get(start + j);
+        }
+        String[] fields = new String(bytes, StandardCharsets.UTF_8).trim().split(",", -1);
+        if (fields[0].isEmpty()) {
+            return;
+        }
+        attributes.put(fields[0], Collections.unmodifiableList(
+                new ArrayList<>(Arrays.asList(fields).subList(1, fields.length))));
+    }
+
+    private void parseFormat(ByteBuffer buffer, int start, int end) {
+        //For example LAX46Y46, the second digit after the X is the number of decimal places
+        for (int j=start; j<end - 2; j++) {
+            if (buffer.get(j) == 'X') {
+                byte decimals = buffer.get(j + 2);
+                if (decimals >= '0' && decimals <= '9') {
+                    coordinateDecimals = decimals - '0';
+                }
+                return;
+            }
+        }
+    }
+
+    private static int indexOf(ByteBuffer buffer, int length, int from, byte target) {
+        for (int j=from; j<length; j++) {
+            if (buffer.get(j) == target) {
+                return j;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the file the header was read from
+     */
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * @return true if the header has any file attributes
+     */
+    boolean hasAttributes() {
+        return !attributes.isEmpty();
+    }
+
+    /**
+     * @return the number of decimal places of the file's coordinates as set by its format
+     * specification (%FS...*%), or -1 if the header doesn't have one
+     */
+    int getCoordinateDecimals() {
+        return coordinateDecimals;
+    }
+
+    /**
+     * @param name - the name of the file attribute, for example ".FileFunction"
+     * @return the attribute's values, or null if the header doesn't have the attribute
+     */
+    List<String> getValues(String name) {
+        return attributes.get(name);
+    }
+}
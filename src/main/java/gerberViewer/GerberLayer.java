@@ -0,0 +1,286 @@
+package gerberViewer;
+
+import java.awt.geom.Area;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import gerberFileReader.AttributeDictionary;
+import gerberFileReader.GerberFileReader;
+import gerberFileReader.GraphicalObject;
+import gerberFileReader.MetaData;
+import gerberFileReader.Units;
+
+/**
+ * The viewer's model of a parsed Gerber file. Unlike a GerberFileReader, a layer can also be
+ * restored from a binary snapshot so the Gerber file doesn't need to be parsed again.
+ */
+class GerberLayer {
+    //The finest coordinate format the Gerber specification allows
+    private static final int DEFAULT_COORDINATE_DECIMALS = 6;
+    //How far inside and outside the edge of a round stroke, as a fraction of its radius, an
+    //object is checked to decide whether it was drawn with a round aperture
+    private static final double ROUND_STROKE_MARGIN = 0.03;
+    //The number of directions checked around each vertex of a center-line, enough that the
+    //flats of an octagon always fall short of the inner points
+    private static final int ROUND_STROKE_DIRECTIONS = 16;
+    //The most vertices of a center-line that are checked
+    private static final int ROUND_STROKE_VERTICES = 16;
+
+    private final File gerberFile;
+    private final String contentHash;
+    private final Units units;
+    private final AttributePool attributePool;
+    private final LayerAttributes fileAttributes;
+    private final GeometryStore geometry;
+    private final List<LayerObject> objects;
+    private final Rectangle2D bounds;
+
+    /**
+     * @param gerberFile - the Gerber file the layer was parsed from
+     * @param contentHash - the SHA-256 hash of the contents the layer was parsed from, or null if
+     * it isn't known
+     * @param units - the units of the layer's coordinates
+     * @param attributePool - the pool of the board the layer belongs to, which interned its
+     * attributes
+     * @param fileAttributes - the file's attributes
+     * @param geometry - the store holding the geometry of the layer's objects
+     * @param objects - the layer's graphical objects in drawing order
+     * @param bounds - the bounds of the layer's objects, or null if it has none
+     */
+    GerberLayer(File gerberFile, String contentHash, Units units, AttributePool attributePool, 
+            LayerAttributes fileAttributes, GeometryStore geometry, List<LayerObject> objects, 
+            Rectangle2D bounds) {
+        this.gerberFile = gerberFile;
+        this.contentHash = contentHash;
+        this.units = units;
+        this.attributePool = attributePool;
+        this.fileAttributes = fileAttributes;
+        this.geometry = geometry;
+        this.objects = Collections.unmodifiableList(objects);
+        this.bounds = bounds;
+    }
+
+    /**
+     * Creates a layer from a GerberFileReader that has finished parsing a Gerber file, or a copy
+     * of one such as a file extracted from an archive. The geometry of the reader's graphical
+     * objects is copied into a GeometryStore so the reader, and all of its areas, can be
+     * discarded once the layer has been created.
+     * @param reader - the reader
+     * @param gerberFile - the Gerber file the reader's file is a copy of
+     * @param contentHash - the SHA-256 hash of the contents the reader parsed, or null if it isn't
+     * known in which case neither the layer nor anything composed from it can be cached
+     * @param coordinateDecimals - the number of decimal places of the file's coordinates from its
+     * header, or -1 if it isn't known
+     * @param pool - the pool of the board the layer belongs to
+     * @return the layer
+     */
+    static GerberLayer from(GerberFileReader reader, File gerberFile, String contentHash, int coordinateDecimals, 
+            AttributePool pool) {
+        //Objects frequently share attribute dictionaries so only intern each one once
+        Map<AttributeDictionary, LayerAttributes> copies = new IdentityHashMap<>();
+        Rectangle2D bounds = reader.getGraphicsStream().getBounds();
+        GeometryStore geometry = new GeometryStore(getResolution(coordinateDecimals), bounds);
+        List<LayerObject> objects = new ArrayList<>(reader.getGraphicsStream().getStream().size());
+        for (GraphicalObject go : reader.getGraphicsStream().getStream()) {
+            LayerAttributes attributes = go.getAttributes() == null ? LayerAttributes.EMPTY :
+                copies.computeIfAbsent(go.getAttributes(), (d) -> LayerAttributes.from(d, pool));
+            MetaData metaData = go.getMetaData();
+            String repeatId = "";
+            String blockId = "";
+            Path2D strokePath = null;
+            if (metaData != null) {
+                repeatId = metaData.getRepeatId() != null ? pool.intern(metaData.getRepeatId()) : "";
+                blockId = metaData.getBlockId() != null ? pool.intern(metaData.getBlockId()) : "";
+                if (metaData.getStrokeInfo() != null) {
+                    strokePath = metaData.getStrokeInfo().getPath();
+                }
+            }
+            Area area = go.getArea() != null ? go.getArea() : new Area();
+            int index = geometry.add(area);
+            double strokeWidth = strokePath != null ? 
+                    getRoundStrokeWidth(area, strokePath, geometry.getResolution()) : 0;
+            objects.add(new LayerObject(geometry, index, go.getPolarity(), attributes, repeatId, blockId, 
+                    strokePath, strokeWidth));
+        }
+        geometry.trim();
+        return new GerberLayer(gerberFile, contentHash, reader.getUnits(), pool,
+                LayerAttributes.from(reader.getFileAttributes(), pool), geometry, objects,
+                bounds != null ? (Rectangle2D) bounds.clone() : null);
+    }
+
+    /**
+     * Finds the width of the round aperture an object was drawn with. The width is first
+     * estimated from how far the object's bounds extend beyond its center-line and the object is
+     * then compared with a round stroke of that width at sample points around the vertices of
+     * its center-line and beside the middle of each segment. Points a little inside the stroke
+     * must be covered by the object and points a little outside it must not be. This rejects
+     * objects drawn with square, rectangular, obround and polygon apertures, whose corners reach
+     * beyond a round stroke or whose flats fall short of it.
+     * @param area - the area covered by the object
+     * @param strokePath - the object's center-line
+     * @param tolerance - how closely the bounds must match
+     * @return the width of the aperture, or 0 if the object wasn't drawn with a round aperture
+     */
+    static double getRoundStrokeWidth(Area area, Path2D strokePath, double tolerance) {
+        //Flatten the center-line so that its bounds don't include the control points of arcs
+        List<double[]> vertices = new ArrayList<>();
+        Rectangle2D pathBounds = null;
+        double[] coords = new double[6];
+        for (PathIterator iter = strokePath.getPathIterator(null, tolerance); !iter.isDone(); iter.next()) {
+            if (iter.currentSegment(coords) == PathIterator.SEG_CLOSE) {
+                continue;
+            }
+            vertices.add(new double[] {coords[0], coords[1]});
+            if (pathBounds == null) {
+                pathBounds = new Rectangle2D.Double(coords[0], coords[1], 0, 0);
+            }
+            else {
+                pathBounds.add(coords[0], coords[1]);
+            }
+        }
+        if (pathBounds == null) {
+            return 0;
+        }
+        Rectangle2D bounds = area.getBounds2D();
+        double width = bounds.getWidth() - pathBounds.getWidth();
+        double height = bounds.getHeight() - pathBounds.getHeight();
+        //Areas approximate arcs with curves that are accurate to a small fraction of the radius
+        double slack = 2*tolerance + 0.01*width;
+        if (width <= slack || Math.abs(width - height) > slack || 
+                Math.abs(bounds.getMinX() + width/2 - pathBounds.getMinX()) > slack ||
+                Math.abs(bounds.getMinY() + height/2 - pathBounds.getMinY()) > slack) {
+            return 0;
+        }
+        double radius = (width + height)/4;
+        double margin = Math.max(ROUND_STROKE_MARGIN*radius, 2*tolerance);
+        //Long arcs are flattened into many vertices, a few spread along the arc are enough
+        int step = Math.max(1, vertices.size()/ROUND_STROKE_VERTICES);
+        for (int i=0; i<vertices.size(); i+=step) {
+            if (!matchesRoundStroke(area, vertices, vertices.get(i), radius, margin, ROUND_STROKE_DIRECTIONS)) {
+                return 0;
+            }
+        }
+        double[] last = vertices.get(vertices.size() - 1);
+        if (!matchesRoundStroke(area, vertices, last, radius, margin, ROUND_STROKE_DIRECTIONS)) {
+            return 0;
+        }
+        //Check the sides of each segment too since a rectangular aperture drawn along its own
+        //axis matches a round one at its ends in every direction but straight out the sides
+        for (int i=1; i<vertices.size(); i+=step) {
+            double[] a = vertices.get(i - 1);
+            double[] b = vertices.get(i);
+            double[] middle = {(a[0] + b[0])/2, (a[1] + b[1])/2};
+            if (!matchesRoundStroke(area, vertices, middle, radius, margin, 4)) {
+                return 0;
+            }
+        }
+        return 2*radius;
+    }
+
+    /**
+     * Compares an object with a round stroke of its center-line in a number of evenly spaced
+     * directions from a point on the center-line
+     * @param area - the area covered by the object
+     * @param vertices - the vertices of the flattened center-line
+     * @param center - the point on the center-line
+     * @param radius - half the width of the stroke
+     * @param margin - how far inside and outside the stroke's edge the object is checked
+     * @param directions - the number of directions to check
+     * @return true if the object covers the points just inside the stroke's edge and doesn't
+     * cover the points just outside it
+     */
+    private static boolean matchesRoundStroke(Area area, List<double[]> vertices, double[] center, 
+            double radius, double margin, int directions) {
+        for (int j=0; j<directions; j++) {
+            double angle = 2*Math.PI*j/directions;
+            double dx = Math.cos(angle);
+            double dy = Math.sin(angle);
+            if (!area.contains(center[0] + (radius - margin)*dx, center[1] + (radius - margin)*dy)) {
+                return false;
+            }
+            double x = center[0] + (radius + margin)*dx;
+            double y = center[1] + (radius + margin)*dy;
+            //Another part of the center-line, such as the rest of a tight arc, may cover the point
+            if (distanceToPath(vertices, x, y) > radius + margin/2 && area.contains(x, y)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double distanceToPath(List<double[]> vertices, double x, double y) {
+        double[] first = vertices.get(0);
+        double distSq = (x - first[0])*(x - first[0]) + (y - first[1])*(y - first[1]);
+        for (int i=1; i<vertices.size(); i++) {
+            double[] a = vertices.get(i - 1);
+            double[] b = vertices.get(i);
+            distSq = Math.min(distSq, Line2D.ptSegDistSq(a[0], a[1], b[0], b[1], x, y));
+        }
+        return Math.sqrt(distSq);
+    }
+
+    /**
+     * @param coordinateDecimals - the number of decimal places of a file's coordinates, or -1 if
+     * it isn't known in which case the default, which is finer than any real file needs, is used
+     * @return the size of the smallest step of the file's coordinates in the file's units
+     */
+    private static double getResolution(int coordinateDecimals) {
+        int decimals = coordinateDecimals >= 0 ? coordinateDecimals : DEFAULT_COORDINATE_DECIMALS;
+        return Math.pow(10, -decimals);
+    }
+
+    File getGerberFile() {
+        return gerberFile;
+    }
+
+    /**
+     * @return the SHA-256 hash of the contents the layer was parsed from as a hexadecimal string,
+     * or null if it isn't known
+     */
+    String getContentHash() {
+        return contentHash;
+    }
+
+    Units getUnits() {
+        return units;
+    }
+
+    /**
+     * @return the pool of the board the layer belongs to
+     */
+    AttributePool getAttributePool() {
+        return attributePool;
+    }
+
+    LayerAttributes getFileAttributes() {
+        return fileAttributes;
+    }
+
+    /**
+     * @return the store holding the geometry of the layer's objects
+     */
+    GeometryStore getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * @return the layer's graphical objects in drawing order
+     */
+    List<LayerObject> getObjects() {
+        return objects;
+    }
+
+    /**
+     * @return a copy of the bounds of the layer's objects, or null if it has none
+     */
+    Rectangle2D getBounds() {
+        return bounds != null ? (Rectangle2D) bounds.clone() : null;
+    }
+}
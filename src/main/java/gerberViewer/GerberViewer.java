@@ -40,13 +40,27 @@ import java.io.FileWriter;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 
 import javax.imageio.ImageIO;
@@ -68,16 +82,12 @@ import javax.swing.JScrollPane;
 import javax.swing.ScrollPaneConstants;
 import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
-import javax.swing.SwingWorker;
+import javax.swing.Timer;
 import javax.swing.border.EmptyBorder;
 import javax.swing.text.DefaultCaret;
 
-import gerberFileReader.Attribute;
 import gerberFileReader.AttributeDictionary;
 import gerberFileReader.GerberFileReader;
-import gerberFileReader.GraphicalObject;
-import gerberFileReader.GraphicsStream;
-import gerberFileReader.MetaData;
 import gerberFileReader.Polarity;
 import gerberFileReader.Units;
 
@@ -95,8 +105,12 @@ public class GerberViewer extends JFrame {
     private static final int HORIZONTAL_SCALE_HEIGHT = 25;
     private static final int VERTICAL_SCALE_WIDTH = 45;
     private static final int SCALE_TICK_LENGTH = 5;
+    private static final int PREVIEW_REFRESH_MS = 250;
+    private static final int FILE_SETTLE_MS = 500;
+    //The number of tiles rendered beyond each edge of the view so that panning finds them ready
+    private static final int OVERSCAN_TILES = 1;
 
-    private Map<String, GerberFileReader> parserMap;
+    private Map<String, GerberLayer> layerMap;
     private JPanel contentPane;
     private DrawingPanel drawingPanel;
     private JProgressBar progressBar;
@@ -106,6 +120,7 @@ public class GerberViewer extends JFrame {
     private JRadioButtonMenuItem rdbtnmntmMetric;
     private JRadioButtonMenuItem rdbtnmntmImperial;
     private JCheckBoxMenuItem chckbxmntmShowReticle;
+    private JCheckBoxMenuItem chckbxmntmExactSolderMask;
     private JButton btnAbort;
     private JMenu mnFile;
     private JMenu mnOptions;
@@ -130,9 +145,11 @@ public class GerberViewer extends JFrame {
     private double zoomFactor = 1;
     protected Point screenZoomPoint;
     public BufferedImage gerberImage;
-    public List<Area> areas;
-    public List<AttributeDictionary> areaAttributes;
-    public List<MetaData> areaMetaData;
+    public BufferedImage reticleImage;
+    //The view the reticle image was last drawn for
+    private AffineTransform reticleTransform;
+    private Rectangle.Double reticleBounds;
+    private HitTester hitTester;
     public AffineTransform viewToObjectTransform;
     public AffineTransform screenToObjectTransform;
     private DrawingPanelColumnHeader drawingPanelColumnHeader;
@@ -149,17 +166,62 @@ public class GerberViewer extends JFrame {
     public BufferedImage horizontalScaleImage;
     protected String displayUnits = "Native";
     protected boolean showReticle = true;
+    protected boolean exactSolderMask = false;
     protected Point screenDragStartPoint;
     protected boolean dragInProgress;
     protected Cursor savedCursor;
     protected String side = "Top";
-    SwingWorker<Void, java.lang.Double> backgroundImageRenderer;
-    private Area substrateArea;
-    private Area solderMaskArea;
+    private RenderScheduler<RenderRequest> renderScheduler = new RenderScheduler<>(
+            Executors.newSingleThreadExecutor((r) -> {
+                Thread thread = new Thread(r, "GerberViewer renderer");
+                thread.setDaemon(true);
+                return thread;
+            }), 
+            (request, generation) -> renderBoard(request, generation), 
+            (generation, completed, ex) -> SwingUtilities.invokeLater(() -> renderFinished(generation, completed, ex)));
+    private ExecutorService speculativeExecutor = Executors.newSingleThreadExecutor((r) -> {
+        Thread thread = new Thread(r, "GerberViewer speculative renderer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    //Only for short file reads and writes, such as header reads and snapshots, never for waiting
+    //on parsers, so that they never queue behind a long parse
+    private ExecutorService ioExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), (r) -> {
+        Thread thread = new Thread(r, "GerberViewer I/O");
+        thread.setDaemon(true);
+        return thread;
+    });
+    //Runs the part of each load that reads files before they can be parsed so the Event Dispatch
+    //Thread never waits on them
+    private ExecutorService loadExecutor = Executors.newSingleThreadExecutor((r) -> {
+        Thread thread = new Thread(r, "GerberViewer loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private CompletableFuture<?> pendingLoad;
+    private ParallelParser parallelParser;
+    private ExecutorService previewExecutor = Executors.newSingleThreadExecutor((r) -> {
+        Thread thread = new Thread(r, "GerberViewer parse preview");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile ParsePreview parsePreview;
+    private Timer previewTimer;
+    private FileWatcher fileWatcher;
+    private volatile BoardGeometry boardGeometry = new BoardGeometry();
     protected Area silkArea;
-    protected GraphicsStream solderMaskStream;
     private int splitPaneBottomHeight;
     private ColorScheme colorScheme;
+    private ForkJoinPool renderPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    private TileCache tileCache = new TileCache(Runtime.getRuntime().maxMemory() / 4);
+    private StampCache stampCache = new StampCache(Runtime.getRuntime().maxMemory() / 32);
+    private String layerSet;
+    private GeometryCache geometryCache = new GeometryCache(
+            new File(new File(System.getProperty("user.home"), ".GerberViewer"), "cache"), 256L*1024*1024);
+    private LayerSnapshot layerSnapshot = new LayerSnapshot(
+            new File(new File(System.getProperty("user.home"), ".GerberViewer"), "snapshots"), 1024L*1024*1024);
+    private GerberFileReader activeReader;
     
     /**
      * Launch the application.
@@ -273,6 +335,9 @@ public class GerberViewer extends JFrame {
         chckbxmntmShowReticle.setSelected(true);
         chckbxmntmShowReticle.addActionListener(showReticleAction);
         
+        chckbxmntmExactSolderMask = new JCheckBoxMenuItem("Exact Solder Mask");
+        chckbxmntmExactSolderMask.addActionListener(exactSolderMaskAction);
+        
         mnColorSchemeMenu = new JMenu("Color Scheme");
         mnOptions.add(mnColorSchemeMenu);
         
@@ -323,6 +388,7 @@ public class GerberViewer extends JFrame {
         mnColorSchemeMenu.add(mntmCustom);
         
         mnOptions.add(chckbxmntmShowReticle);
+        mnOptions.add(chckbxmntmExactSolderMask);
         
         drawingPanel = new DrawingPanel();
         
@@ -338,37 +404,37 @@ public class GerberViewer extends JFrame {
         drawingPanel.addMouseListener(new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
+                if (hitTester == null) {
+                    return;
+                }
                 Point point = e.getPoint();
                 Point2D imagePoint = screenToObjectTransform.transform(point, null);
+                List<LayerObject> hits = hitTester.objectsAt(imagePoint);
                 boolean starting = true;
-                for (int i=0; i<areas.size(); i++) {
-                    if (areas.get(i).contains(imagePoint)) {
-                        for (String attName : areaAttributes.get(i).keySet()) {
-                            if (starting) {
-                                textArea.append(String.format("Found attributes at [%.4f, %.4f]:\n", imagePoint.getX(), imagePoint.getY()));
-                                starting = false;
-                            }
-                            textArea.append("    " + areaAttributes.get(i).get(attName) + "\n");
+                for (LayerObject go : hits) {
+                    LayerAttributes attributes = go.getAttributes();
+                    for (String attName : attributes.keySet()) {
+                        if (starting) {
+                            textArea.append(String.format("Found attributes at [%.4f, %.4f]:\n", imagePoint.getX(), imagePoint.getY()));
+                            starting = false;
                         }
+                        textArea.append("    " + attributes.get(attName) + "\n");
                     }
                 }
-                for (int i=0; i<areas.size(); i++) {
-                    if (areas.get(i).contains(imagePoint)) {
-                        MetaData metaData = areaMetaData.get(i);
-                        if (!metaData.getRepeatId().isEmpty()) {
-                            if (starting) {
-                                textArea.append(String.format("Found meta data at [%.4f, %.4f]:\n", imagePoint.getX(), imagePoint.getY()));
-                                starting = false;
-                            }
-                            textArea.append("    Metadata Repeat Id = " + metaData.getRepeatId() + "\n");
+                for (LayerObject metaData : hits) {
+                    if (!metaData.getRepeatId().isEmpty()) {
+                        if (starting) {
+                            textArea.append(String.format("Found meta data at [%.4f, %.4f]:\n", imagePoint.getX(), imagePoint.getY()));
+                            starting = false;
                         }
-                        if (!metaData.getBlockId().isEmpty()) {
-                            if (starting) {
-                                textArea.append(String.format("Found meta data at [%.4f, %.4f]:\n", imagePoint.getX(), imagePoint.getY()));
-                                starting = false;
-                            }
-                            textArea.append("    Metadata Block Id = " + metaData.getBlockId() + "\n");
+                        textArea.append("    Metadata Repeat Id = " + metaData.getRepeatId() + "\n");
+                    }
+                    if (!metaData.getBlockId().isEmpty()) {
+                        if (starting) {
+                            textArea.append(String.format("Found meta data at [%.4f, %.4f]:\n", imagePoint.getX(), imagePoint.getY()));
+                            starting = false;
                         }
+                        textArea.append("    Metadata Block Id = " + metaData.getBlockId() + "\n");
                     }
                 }
             }
@@ -384,6 +450,8 @@ public class GerberViewer extends JFrame {
                     dragInProgress = false;
                     drawingPanel.setCursor(savedCursor);
                     computePannedBounds(screenDragStartPoint, e.getPoint());
+                    //The reticle isn't redrawn while dragging
+                    updateReticleForView();
                     drawingPanel.revalidate();
                     drawingPanel.repaint();
                 }
@@ -494,6 +562,12 @@ public class GerberViewer extends JFrame {
                 colorScheme = new ColorScheme("Green");
             }
         });
+        
+        //Get rid of any cached geometry whose Gerber files have changed or been deleted
+        Thread cacheCleaner = new Thread(() -> geometryCache.evictStale(), "GerberViewer cache cleaner");
+        cacheCleaner.setDaemon(true);
+        cacheCleaner.setPriority(Thread.MIN_PRIORITY);
+        cacheCleaner.start();
     }
 
     private ActionListener viewSelectedAction = new ActionListener() {
@@ -506,7 +580,6 @@ public class GerberViewer extends JFrame {
             else {
                 side = "Bot";
             }
-            solderMaskArea = null;
             computeTransforms();
             drawingPanel.repaint();
             drawingPanelRowHeader.repaint();
@@ -521,7 +594,7 @@ public class GerberViewer extends JFrame {
         @Override
         public void actionPerformed(ActionEvent e) {
             displayUnits = e.getActionCommand();
-            renderGerberImage();
+            updateReticle();
             drawingPanel.repaint();
             drawingPanelRowHeader.repaint();
             drawingPanelColumnHeader.repaint();
@@ -546,7 +619,7 @@ public class GerberViewer extends JFrame {
             else {
                 colorScheme = new ColorScheme(e.getActionCommand());
             }
-            renderGerberImage();
+            updateReticle();
             drawingPanel.repaint();
         }
         
@@ -557,12 +630,31 @@ public class GerberViewer extends JFrame {
         @Override
         public void actionPerformed(ActionEvent e) {
             showReticle = chckbxmntmShowReticle.isSelected();
-            renderGerberImage();
+            updateReticle();
             drawingPanel.repaint();
         }
         
     };
     
+    private ActionListener exactSolderMaskAction = new ActionListener() {
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            exactSolderMask = chckbxmntmExactSolderMask.isSelected();
+            if (layerMap != null && layerSet != null) {
+                //Only the solder mask needs to be rendered again
+                int layerIdx = Arrays.asList(getPlotOrder(layerMap)).indexOf("Soldermask");
+                if (layerIdx >= 0) {
+                    BitSet staleLayers = new BitSet();
+                    staleLayers.set(layerIdx);
+                    tileCache.markStale(layerSet, null, staleLayers);
+                }
+                renderGerberImage();
+            }
+        }
+        
+    };
+    
     private Dimension getDefaultDisplayPanelSize() {
         contentPane.revalidate();
         Dimension currentSize = scrollPaneDrawing.getViewport().getSize();
@@ -581,19 +673,17 @@ public class GerberViewer extends JFrame {
     }
     
     private void computeDefaultViewableBounds() {
-        if (parserMap.keySet().size() > 0) {
+        if (layerMap.keySet().size() > 0) {
             boolean starting = true;
-            for (String key : parserMap.keySet()) {
-                GerberFileReader gerberFileReader = parserMap.get(key);
-                if (gerberFileReader.getGraphicsStream() != null) {
-                    if (gerberFileReader.getGraphicsStream().getBounds() != null) {
-                        if (starting) {
-                            graphicsBounds = gerberFileReader.getGraphicsStream().getBounds();
-                            starting = false;
-                        }
-                        else {
-                            graphicsBounds.add(gerberFileReader.getGraphicsStream().getBounds());
-                        }
+            for (String key : layerMap.keySet()) {
+                GerberLayer layer = layerMap.get(key);
+                if (layer.getBounds() != null) {
+                    if (starting) {
+                        graphicsBounds = layer.getBounds();
+                        starting = false;
+                    }
+                    else {
+                        graphicsBounds.add(layer.getBounds());
                     }
                 }
             }
@@ -628,14 +718,8 @@ public class GerberViewer extends JFrame {
         scaleFactor = Math.min(viewPortBounds.width / viewableBounds.width,
                 viewPortBounds.height / viewableBounds.height);
 
-        objectToViewTransform = new AffineTransform();
-        objectToViewTransform.scale(sign*scaleFactor, scaleFactor);
-        objectToViewTransform.translate(-xOffset-viewableBounds.getX(), -viewableBounds.getY());
-
-        objectToScreenTransform = new AffineTransform();
-        objectToScreenTransform.translate(PIXEL_GAP, (int) scrollingBounds.height - PIXEL_GAP);
-        objectToScreenTransform.scale(1, -1);
-        objectToScreenTransform.concatenate(objectToViewTransform);
+        objectToViewTransform = getObjectToViewTransform(side);
+        objectToScreenTransform = getObjectToScreenTransform(side);
 
         viewToObjectTransform = new AffineTransform();
         viewToObjectTransform.translate(xOffset+viewableBounds.getX(), viewableBounds.getY());
@@ -653,6 +737,35 @@ public class GerberViewer extends JFrame {
         renderGerberImage();
     }
     
+    /**
+     * @param viewSide - the side of the board being viewed
+     * @return the transform from object coordinates to view coordinates
+     */
+    private AffineTransform getObjectToViewTransform(String viewSide) {
+        double sign = 1;
+        double xOffset = 0;
+        if (viewSide.equals("Bot")) {
+            sign = -1.0;
+            xOffset = viewableBounds.getWidth();
+        }
+        AffineTransform transform = new AffineTransform();
+        transform.scale(sign*scaleFactor, scaleFactor);
+        transform.translate(-xOffset-viewableBounds.getX(), -viewableBounds.getY());
+        return transform;
+    }
+    
+    /**
+     * @param viewSide - the side of the board being viewed
+     * @return the transform from object coordinates to screen coordinates
+     */
+    private AffineTransform getObjectToScreenTransform(String viewSide) {
+        AffineTransform transform = new AffineTransform();
+        transform.translate(PIXEL_GAP, (int) scrollingBounds.height - PIXEL_GAP);
+        transform.scale(1, -1);
+        transform.concatenate(getObjectToViewTransform(viewSide));
+        return transform;
+    }
+    
     private void computeResizedBounds() {
         if (viewableBounds != null) {
             computeViewPortBoundsAndAspectRatio();
@@ -701,13 +814,13 @@ public class GerberViewer extends JFrame {
         @Override
         public void paintComponent(Graphics g) {
             Color foreGround = Color.BLACK;
-            GerberFileReader gerberFileReader = null;
-            if (parserMap != null) {
-                if (parserMap.keySet().size() > 0) {
-                    gerberFileReader = parserMap.get(parserMap.keySet().toArray()[0]);
+            GerberLayer layer = null;
+            if (layerMap != null) {
+                if (layerMap.keySet().size() > 0) {
+                    layer = layerMap.get(layerMap.keySet().toArray()[0]);
                 }
             }
-            if (gerberFileReader != null && gerberFileReader.getGraphicsStream() != null) {
+            if (layer != null) {
                 Graphics2D g2 = (Graphics2D) g;
                 g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
@@ -769,7 +882,16 @@ public class GerberViewer extends JFrame {
         
         @Override
         public void paintComponent(Graphics g) {
-            if (gerberImage != null) {
+            if (layerSet != null) {
+                Graphics2D g2 = (Graphics2D) g;
+                g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                paintTiles(g2);
+            }
+            else if (parsePreview != null) {
+                Rectangle visible = getVisibleRect();
+                g.drawImage(parsePreview.getImage(), visible.x, visible.y, this);
+            }
+            else if (gerberImage != null) {
                 Graphics2D g2 = (Graphics2D) g;
                 g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
                 g2.drawImage(gerberImage, 0, 0, this);
@@ -780,277 +902,988 @@ public class GerberViewer extends JFrame {
         }
         
     }
-
-    private void renderGerberImage() {
-        if (parserMap != null && parserMap.keySet().size() > 0) {
-            if (backgroundImageRenderer != null && !backgroundImageRenderer.isDone()) {
-                backgroundImageRenderer.cancel(true);
-                while (!backgroundImageRenderer.isDone()) {
-                    //wait for the previous renderer to cancel
+    
+    /**
+     * Composites the cached tiles that are currently in view along with the reticle
+     * @param g2 - the graphics context to paint on
+     */
+    private void paintTiles(Graphics2D g2) {
+        g2.setColor(colorScheme.backgroundColor);
+        g2.fillRect(0, 0, (int) scrollingBounds.width, (int) scrollingBounds.height);
+        Point origin = getTileOrigin(side);
+        Rectangle tileRange = getVisibleTileRange(origin);
+        for (int ty = tileRange.y; ty < tileRange.y + tileRange.height; ty++) {
+            for (int tx = tileRange.x; tx < tileRange.x + tileRange.width; tx++) {
+                TileCache.Tile tile = tileCache.get(getTileKey(tx, ty));
+                if (tile != null) {
+                    g2.drawImage(tile.getComposite(colorScheme), origin.x + tx*TileCache.TILE_SIZE, 
+                            origin.y + ty*TileCache.TILE_SIZE, null);
                 }
             }
-            
-            backgroundImageRenderer = new SwingWorker<Void, java.lang.Double>() {
+        }
+        //The reticle is only redrawn once a drag ends so it is hidden until then
+        if (reticleImage != null && !dragInProgress) {
+            g2.drawImage(reticleImage, 0, 0, null);
+        }
+    }
+    
+    /**
+     * The tile grid is fixed relative to the board so that it only moves when the view is
+     * panned. This computes where, in screen coordinates, the origin of the tile grid is currently
+     * located.
+     * @return the screen location of the tile grid's origin
+     */
+    private Point getTileOrigin(String viewSide) {
+        AffineTransform transform = viewSide.equals(side) ? objectToScreenTransform : getObjectToScreenTransform(viewSide);
+        Point2D origin = transform.transform(new Point2D.Double(0, 0), null);
+        return new Point((int) Math.floor(origin.getX() + 0.5), (int) Math.floor(origin.getY() + 0.5));
+    }
+    
+    private Rectangle getVisibleTileRange(Point origin) {
+        int tx0 = Math.floorDiv(-origin.x, TileCache.TILE_SIZE);
+        int ty0 = Math.floorDiv(-origin.y, TileCache.TILE_SIZE);
+        int tx1 = Math.floorDiv((int) scrollingBounds.width - 1 - origin.x, TileCache.TILE_SIZE);
+        int ty1 = Math.floorDiv((int) scrollingBounds.height - 1 - origin.y, TileCache.TILE_SIZE);
+        return new Rectangle(tx0, ty0, tx1 - tx0 + 1, ty1 - ty0 + 1);
+    }
+    
+    private TileCache.TileKey getTileKey(int tx, int ty) {
+        return new TileCache.TileKey(scaleFactor, tx, ty, side, layerSet);
+    }
+    
+    /**
+     * The transform from object coordinates to tile grid coordinates. Unlike the object to screen
+     * transform, this has no translation so it doesn't change as the view is panned.
+     * @param viewSide - the side of the board being viewed
+     * @return the transform
+     */
+    private AffineTransform getObjectToTileGridTransform(String viewSide) {
+        double sign = viewSide.equals("Bot") ? -1.0 : 1.0;
+        return AffineTransform.getScaleInstance(sign*scaleFactor, -scaleFactor);
+    }
+    
+    private String[] getPlotOrder(Map<String, GerberLayer> layers) {
+        if (layers.keySet().size() > 1) {
+            return new String[] {"Profile", "Copper", "Plated", "NonPlated", "Soldermask", "Legend"};
+        }
+        else {
+            return new String[] {"Anything"};
+        }
+    }
+    
+    /**
+     * The geometry composed from the layers of the board being viewed. A new instance is created
+     * each time a board is loaded, or one of its layers is reloaded, so that a render that is 
+     * still winding down for a previous board can never store its results into the current one.
+     */
+    private static class BoardGeometry {
+        volatile Area substrateArea;
+        final Map<String, Area> solderMaskAreas = new ConcurrentHashMap<>();
+        final Map<String, Boolean> solderMaskOpenings = new ConcurrentHashMap<>();
+        final Map<String, List<Area>> silkAreas = new ConcurrentHashMap<>();
+        //GerberLayer doesn't override equals so the layers are compared by identity
+        final Map<GerberLayer, SpatialIndex<LayerObject>> spatialIndices = new ConcurrentHashMap<>();
+    }
+    
+    /**
+     * Everything a render needs to know about the view. This is captured on the Event Dispatch
+     * Thread when the render is requested so that the view can't change out from under the
+     * renderer.
+     */
+    private static class RenderRequest {
+        Map<String, GerberLayer> layers;
+        BoardGeometry board;
+        String layerSet;
+        String side;
+        double scale;
+        boolean exactSolderMask;
+        AffineTransform objectToTileGridTransform;
+        Rectangle tileRange;
+        Rectangle overscanTileRange;
+        Rectangle2D viewableClippingBounds;
+    }
+    
+    /**
+     * Captures the current view
+     * @param viewSide - the side of the board to render, this need not be the side that is 
+     * currently being viewed
+     * @return the render request
+     */
+    private RenderRequest createRenderRequest(String viewSide) {
+        RenderRequest request = new RenderRequest();
+        request.layers = layerMap;
+        request.board = boardGeometry;
+        request.layerSet = layerSet;
+        request.side = viewSide;
+        request.scale = scaleFactor;
+        request.exactSolderMask = exactSolderMask;
+        request.objectToTileGridTransform = getObjectToTileGridTransform(viewSide);
+        request.tileRange = getVisibleTileRange(getTileOrigin(viewSide));
+        request.overscanTileRange = new Rectangle(request.tileRange);
+        request.overscanTileRange.grow(OVERSCAN_TILES, OVERSCAN_TILES);
+        request.viewableClippingBounds = viewableClippingBounds;
+        return request;
+    }
 
-                @Override
-                protected Void doInBackground() throws Exception {
-                    gerberImage = new BufferedImage((int) scrollingBounds.width, (int) scrollingBounds.height, BufferedImage.TYPE_4BYTE_ABGR);
-                    Graphics2D offScr = gerberImage.createGraphics();
-                    offScr.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    private void renderGerberImage() {
+        if (layerMap != null && layerMap.keySet().size() > 0) {
+            //This never blocks, if a render is already in flight, this one replaces any that is 
+            //pending and the one in flight is told to give up as soon as it can
+            renderScheduler.requestRender(createRenderRequest(side));
+        }
+        else {
+            layerSet = null;
+            if (scrollingBounds == null) {
+                computeViewPortBoundsAndAspectRatio();
+            }
+            gerberImage = new BufferedImage((int) scrollingBounds.width, (int) scrollingBounds.height, BufferedImage.TYPE_4BYTE_ABGR);
+            Graphics2D offScr = gerberImage.createGraphics();
+            offScr.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
-                    Color background;
-                    Color foreground;
-                    Color transparentColor = new Color(0, 0, 0, 0);
-                    
-                    offScr.setColor(colorScheme.backgroundColor);
-                    offScr.fillRect(0, 0, (int) scrollingBounds.width, (int) scrollingBounds.height);
-                    
-                    offScr.translate(PIXEL_GAP, (int) scrollingBounds.height - PIXEL_GAP);
-                    offScr.scale(1, -1);
-                    
-                    areas = new ArrayList<>();
-                    areaAttributes = new ArrayList<>();
-                    areaMetaData = new ArrayList<>();
-                    String[] plotOrder;
-                    if (parserMap.keySet().size() > 1) {
-                        plotOrder = new String[] {"Profile", "Copper", "Plated", "NonPlated", "Soldermask", "Legend"};
-                    }
-                    else {
-                        plotOrder = new String[] {"Anything"};
-                    }
-                    double layerCount = plotOrder.length;
-                    int layerNumber = 0;
-                    GraphicsStream graphicStream = null;
-                    functionLoop: for (String function : plotOrder) {
-                        if (isCancelled()) {
-                            break functionLoop;
-                        }
-                        final int lNum = layerNumber;
-                        keyLoop: for (String key : parserMap.keySet()) {
-                            GerberFileReader parser = parserMap.get(key);
-                            AttributeDictionary fileAttributes = parser.getFileAttributes();
-                            if (function.equals("Anything") || fileAttributes.get(".FileFunction").getValues().get(0).equals(function)) {
-                                switch (function) {
-                                    case "Profile":
-                                        graphicStream = parser.getGraphicsStream();
-                                        if (substrateArea == null) {
-                                            substrateArea = constructBoardSubstrate(graphicStream, (p) -> updateProgressBar((lNum + p)/layerCount));
-                                        }
-                                        Shape substrate = objectToViewTransform.createTransformedShape(substrateArea);
-                                        offScr.setColor(colorScheme.substrateColor);
-                                        offScr.fill(substrate);
-                                        break keyLoop;
-                                    case "Copper":
-                                        if (!fileAttributes.get(".FileFunction").getValues().get(2).equals(side)) {
-                                            continue keyLoop;
-                                        }
-                                        foreground = colorScheme.copperColor;
-                                        background = transparentColor;
-                                        break;
-                                    case "Soldermask":
-                                        if (!fileAttributes.get(".FileFunction").getValues().get(1).equals(side)) {
-                                            continue keyLoop;
-                                        }
-                                        graphicStream = parser.getGraphicsStream();
-                                        solderMaskStream = graphicStream;
-                                        if (solderMaskArea == null) {
-                                            solderMaskArea = constructSolderMask(graphicStream, substrateArea, (p) -> updateProgressBar((lNum + p)/layerCount));
-                                        }
-                                        if (!solderMaskArea.equals(substrateArea)) {
-                                            Shape mask = objectToViewTransform.createTransformedShape(solderMaskArea);
-                                            offScr.setColor(colorScheme.maskColor);
-                                            offScr.fill(mask);
-                                        }
-                                        break keyLoop;
-                                    case "Legend":
-                                        if (!fileAttributes.get(".FileFunction").getValues().get(1).equals(side)) {
-                                            continue keyLoop;
-                                        }
-                                        graphicStream = parser.getGraphicsStream();
-                                        offScr.setColor(colorScheme.legendColor);
-                                        renderSilkScreen(offScr, graphicStream, solderMaskStream, 
-                                                (p) -> updateProgressBar((lNum + p)/layerCount));
-                                        break keyLoop;
-                                    case "Plated":
-                                    case "NonPlated":
-                                        foreground = colorScheme.backgroundColor;
-                                        background = transparentColor;
-                                        break;
-                                    case "Anything":
-                                        foreground = colorScheme.copperColor;
-                                        background = colorScheme.backgroundColor;
-                                        break;
-                                    default:
-                                        continue keyLoop;
+            offScr.setColor(drawingPanelUnit.getBackground());
+            offScr.fillRect(0, 0, (int) scrollingBounds.width, (int) scrollingBounds.height);
+            offScr.dispose();
+            drawingPanel.repaint();
+        }
+    }
+    
+    /**
+     * Performs a render on the render scheduler's thread
+     * @param request - the view to render
+     * @param generation - the generation the render scheduler assigned to the request
+     * @throws Exception if the render fails
+     */
+    private void renderBoard(RenderRequest request, long generation) throws Exception {
+        //Constructing the board level geometry doesn't depend on the view so it is only given up 
+        //if the render is aborted, whereas everything else is given up as soon as a newer render 
+        //is requested
+        BooleanSupplier aborted = () -> renderScheduler.isAborted(generation);
+        BooleanSupplier stale = () -> renderScheduler.isStale(generation);
+        String[] plotOrder = getPlotOrder(request.layers);
+        
+        //First construct the board level geometry that the tiles are rendered from and note the
+        //layers in view so their objects can be identified by mouse clicks
+        List<GerberLayer> viewableLayers = new ArrayList<>();
+        composeBoardGeometry(request, plotOrder, (p) -> updateProgressBar(p), aborted, 
+                (layer) -> viewableLayers.add(layer));
+        
+        if (stale.getAsBoolean()) {
+            return;
+        }
+        
+        //Now render any tiles in, or just out of, view that aren't already in the cache. While
+        //the view is being dragged a newer render is requested with every move of the mouse so
+        //tiles that have been started are finished rather than given up, otherwise none might
+        //ever be finished until the drag ends.
+        AtomicInteger count = new AtomicInteger();
+        renderMissingTiles(request, plotOrder, stale, aborted, (total) -> 
+                showRenderProgress((double) count.incrementAndGet()/total));
+        
+        if (!stale.getAsBoolean()) {
+            List<SpatialIndex<LayerObject>> indices = new ArrayList<>();
+            for (GerberLayer layer : viewableLayers) {
+                indices.add(getSpatialIndex(request.board, layer));
+            }
+            //Objects no more than 2 pixels across aren't rendered so they can't be clicked on
+            HitTester viewableHitTester = new HitTester(viewableLayers, indices, 2/request.scale);
+            SwingUtilities.invokeLater(() -> hitTester = viewableHitTester);
+        }
+    }
+    
+    /**
+     * Constructs any board level geometry needed to render a side of the board that hasn't 
+     * already been constructed
+     * @param request - the view being rendered
+     * @param plotOrder - the order in which the layers are to be rendered
+     * @param showProgress - receives the fraction of the construction completed so far
+     * @param cancelled - returns true if construction should be abandoned
+     * @param layerInView - if not null, receives each layer whose objects
+     * can be identified by mouse clicks
+     */
+    private void composeBoardGeometry(RenderRequest request, String[] plotOrder, 
+            Consumer<java.lang.Double> showProgress, BooleanSupplier cancelled, 
+            Consumer<GerberLayer> layerInView) {
+        BoardGeometry board = request.board;
+        //Hold the board so that geometry being constructed in the background is waited for
+        //rather than being constructed twice
+        synchronized (board) {
+            composeBoardGeometry(request, board, plotOrder, showProgress, cancelled, layerInView);
+        }
+    }
+    
+    private void composeBoardGeometry(RenderRequest request, BoardGeometry board, String[] plotOrder, 
+            Consumer<java.lang.Double> showProgress, BooleanSupplier cancelled, 
+            Consumer<GerberLayer> layerInView) {
+        String renderSide = request.side;
+        buildSpatialIndices(request);
+        double layerCount = plotOrder.length;
+        int layerNumber = 0;
+        functionLoop: for (String function : plotOrder) {
+            if (cancelled.getAsBoolean()) {
+                break functionLoop;
+            }
+            final int lNum = layerNumber;
+            keyLoop: for (String key : request.layers.keySet()) {
+                GerberLayer layer = request.layers.get(key);
+                LayerAttributes fileAttributes = layer.getFileAttributes();
+                if (function.equals("Anything") || fileAttributes.get(".FileFunction").getValues().get(0).equals(function)) {
+                    switch (function) {
+                        case "Profile":
+                            if (board.substrateArea == null) {
+                                GerberLayer[] sources = new GerberLayer[] {layer};
+                                List<Area> cached = loadCachedGeometry("Board substrate", "", sources);
+                                if (cached != null) {
+                                    board.substrateArea = cached.get(0);
                                 }
-                                
-                                graphicStream = parser.getGraphicsStream();
-                                double total = graphicStream.getStream().size();
-                                int count = 0;
-                                for (GraphicalObject go : graphicStream.getStream()) {
-                                    if (isCancelled()) {
-                                        break functionLoop;
+                                else {
+                                    Area substrateArea = constructBoardSubstrate(layer, layer.getUnits(), 
+                                            (p) -> showProgress.accept((lNum + p)/layerCount), cancelled);
+                                    if (substrateArea != null) {
+                                        storeCachedGeometry("Board substrate", "", Collections.singletonList(substrateArea), sources);
+                                        board.substrateArea = substrateArea;
                                     }
-                                    Rectangle2D bounds = go.getArea().getBounds2D();
-                                    if (bounds.intersects(viewableClippingBounds) && (bounds.getWidth()*scaleFactor > 2 || bounds.getHeight()*scaleFactor > 2)) {
-                                        if (!dragInProgress) {
-                                            Shape shape = objectToViewTransform.createTransformedShape(go.getArea());
-                                            Area area = go.getArea();
-                                            if (go.getPolarity() == Polarity.DARK) {
-                                                offScr.setColor(foreground);
-                                            }
-                                            else {
-                                                offScr.setColor(background);
-                                                for (Area prevArea : areas) {
-                                                    prevArea.subtract(area);
-                                                }
-                                            }
-                                            offScr.fill(shape);
-                                            areas.add(area);
-                                            areaAttributes.add(go.getAttributes());
-                                            areaMetaData.add(go.getMetaData());
-                                        }
-                                        else {
-                                            Shape shape = objectToViewTransform.createTransformedShape(bounds);
-                                            offScr.setColor(foreground);
-                                            offScr.draw(shape);
-                                        }
+                                }
+                            }
+                            break keyLoop;
+                        case "Copper":
+                            if (!fileAttributes.get(".FileFunction").getValues().get(2).equals(renderSide)) {
+                                continue keyLoop;
+                            }
+                            break;
+                        case "Soldermask":
+                            if (!fileAttributes.get(".FileFunction").getValues().get(1).equals(renderSide)) {
+                                continue keyLoop;
+                            }
+                            if (!board.solderMaskOpenings.containsKey(renderSide)) {
+                                board.solderMaskOpenings.put(renderSide, hasDarkObjects(layer));
+                            }
+                            //The tiles are rendered by erasing the openings from the substrate
+                            //so the exact solder mask is only constructed if it is asked for
+                            if (request.exactSolderMask && !board.solderMaskAreas.containsKey(renderSide) &&
+                                    board.substrateArea != null) {
+                                //The solder mask depends on the substrate so the profile is one of its sources
+                                GerberLayer[] sources = new GerberLayer[] {findLayer(request.layers, "Profile", null), 
+                                        layer};
+                                List<Area> cached = loadCachedGeometry("Solder Mask", renderSide, sources);
+                                Area solderMaskArea;
+                                if (cached != null) {
+                                    solderMaskArea = cached.get(0);
+                                }
+                                else {
+                                    solderMaskArea = constructSolderMask(layer, board.substrateArea, 
+                                            (p) -> showProgress.accept((lNum + p)/layerCount), cancelled);
+                                    if (solderMaskArea != null) {
+                                        storeCachedGeometry("Solder Mask", renderSide, Collections.singletonList(solderMaskArea), sources);
                                     }
-                                    count++;
-                                    publish((layerNumber + count/total)/layerCount);
                                 }
-                                break keyLoop;
+                                if (solderMaskArea != null) {
+                                    board.solderMaskAreas.put(renderSide, solderMaskArea);
+                                }
                             }
-                        }
-                        layerNumber++;
+                            break keyLoop;
+                        case "Legend":
+                            if (!fileAttributes.get(".FileFunction").getValues().get(1).equals(renderSide)) {
+                                continue keyLoop;
+                            }
+                            if (!board.silkAreas.containsKey(renderSide)) {
+                                GerberLayer solderMaskLayer = findLayer(request.layers, "Soldermask", renderSide);
+                                GerberLayer[] sources = solderMaskLayer != null ? 
+                                        new GerberLayer[] {layer, solderMaskLayer} : new GerberLayer[] {layer};
+                                List<Area> silkAreas = loadCachedGeometry("Silkscreen", renderSide, sources);
+                                if (silkAreas == null) {
+                                    silkAreas = clipSilkScreen(board, layer, 
+                                            solderMaskLayer, 
+                                            (p) -> showProgress.accept((lNum + p)/layerCount), cancelled);
+                                    if (silkAreas != null) {
+                                        storeCachedGeometry("Silkscreen", renderSide, silkAreas, sources);
+                                    }
+                                }
+                                if (silkAreas != null) {
+                                    board.silkAreas.put(renderSide, silkAreas);
+                                }
+                            }
+                            break keyLoop;
+                        case "Plated":
+                        case "NonPlated":
+                        case "Anything":
+                            break;
+                        default:
+                            continue keyLoop;
                     }
                     
-                    overlayReticle(offScr);
-                    
-                    offScr.dispose();
+                    if (layerInView != null) {
+                        layerInView.accept(layer);
+                    }
+                    break keyLoop;
+                }
+            }
+            layerNumber++;
+        }
+    }
+    
+    /**
+     * Renders the tiles in view, and those in a margin around the view, that aren't already in 
+     * the tile cache. Each tile is independent of all the others so they are rendered in 
+     * parallel, with the tiles in view started first.
+     * @param request - the view being rendered
+     * @param plotOrder - the order in which the layers are to be rendered
+     * @param cancelled - returns true if no more tiles should be started
+     * @param abandoned - returns true if the tiles that have been started should be given up
+     * @param tileRendered - called with the number of missing tiles each time one is rendered
+     * @throws Exception if rendering a tile fails
+     */
+    private void renderMissingTiles(RenderRequest request, String[] plotOrder, BooleanSupplier cancelled,
+            BooleanSupplier abandoned, Consumer<Integer> tileRendered) throws Exception {
+        List<TileCache.TileKey> missingTiles = new ArrayList<>();
+        addMissingTiles(request, request.tileRange, null, missingTiles);
+        addMissingTiles(request, request.overscanTileRange, request.tileRange, missingTiles);
+        List<ForkJoinTask<Void>> tileTasks = new ArrayList<>();
+        for (TileCache.TileKey tileKey : missingTiles) {
+            tileTasks.add(renderPool.submit(() -> {
+                if (cancelled.getAsBoolean()) {
                     return null;
                 }
-                
-                @Override
-                protected void process(List<java.lang.Double> chunksOfStatus) {
-                   for (java.lang.Double d : chunksOfStatus) {
-                        updateProgressBar(d);
-                    }
+                TileCache.Tile tile = tileCache.get(tileKey);
+                BitSet layers;
+                if (tile != null && tile.isStale()) {
+                    layers = tile.getStaleLayers();
+                    tile = tile.withoutStaleLayers();
+                }
+                else {
+                    tile = new TileCache.Tile(plotOrder);
+                    layers = new BitSet();
+                    layers.set(0, plotOrder.length);
                 }
+                AffineTransform tileTransform = AffineTransform.getTranslateInstance(
+                        -tileKey.tileX*TileCache.TILE_SIZE, -tileKey.tileY*TileCache.TILE_SIZE);
+                tileTransform.concatenate(request.objectToTileGridTransform);
+                //Pad the tile's bounds by a pixel so objects that only anti-alias into it are included
+                Rectangle2D tileBounds = tileTransform.createInverse().createTransformedShape(
+                        new Rectangle(-1, -1, TileCache.TILE_SIZE + 2, TileCache.TILE_SIZE + 2)).getBounds2D();
                 
-                @Override
-                protected void done() {
-                    try {
-                        get();
-                        drawingPanel.repaint();
-                        drawingPanelUnit.repaint();
-                        drawingPanelColumnHeader.repaint();
-                        drawingPanelRowHeader.repaint();
-                        mntmSaveImage.setEnabled(true);
-                        if (parserMap.keySet().size() > 1) {
-                            mntmWritePnPData.setEnabled(true);
-                            mntmWriteNetList.setEnabled(true);
-                        }
+                if (renderTile(tile, layers, tileTransform, tileBounds, request, plotOrder, abandoned)) {
+                    tileCache.put(tileKey, tile);
+                }
+                tileRendered.accept(missingTiles.size());
+                return null;
+            }));
+        }
+        try {
+            for (ForkJoinTask<Void> tileTask : tileTasks) {
+                tileTask.get();
+            }
+        }
+        finally {
+            //If this render has been superseded, don't start any tiles that haven't started yet
+            for (ForkJoinTask<Void> tileTask : tileTasks) {
+                tileTask.cancel(false);
+            }
+        }
+    }
+    
+    /**
+     * Finds the tiles in a range that are missing from the tile cache, or have stale layers
+     * @param request - the view being rendered
+     * @param tileRange - the range of tiles to check
+     * @param excludedRange - a range of tiles within the range not to check, may be null
+     * @param missingTiles - receives the keys of the missing tiles
+     */
+    private void addMissingTiles(RenderRequest request, Rectangle tileRange, Rectangle excludedRange, 
+            List<TileCache.TileKey> missingTiles) {
+        for (int ty = tileRange.y; ty < tileRange.y + tileRange.height; ty++) {
+            for (int tx = tileRange.x; tx < tileRange.x + tileRange.width; tx++) {
+                if (excludedRange != null && excludedRange.contains(tx, ty)) {
+                    continue;
+                }
+                TileCache.TileKey tileKey = new TileCache.TileKey(request.scale, tx, ty, request.side, request.layerSet);
+                TileCache.Tile tile = tileCache.get(tileKey);
+                //A tile with stale layers only needs those layers rendered again
+                if (tile == null || tile.isStale()) {
+                    missingTiles.add(tileKey);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Constructs the board substrate and solder masks in the background as soon as the layers
+     * they depend on have been parsed
+     * @param parsed - the layers that have been parsed so far
+     * @param board - the board the layers belong to
+     * @param cancelled - returns true if construction should be abandoned
+     */
+    private void precomposeBoardGeometry(Map<String, GerberLayer> parsed, BoardGeometry board, 
+            BooleanSupplier cancelled) {
+        speculativeExecutor.execute(() -> {
+            for (String renderSide : new String[] {"Top", "Bot"}) {
+                if (cancelled.getAsBoolean()) {
+                    return;
+                }
+                //The silkscreen isn't constructed here because it can't be clipped until the
+                //solder mask layer has been parsed
+                RenderRequest request = new RenderRequest();
+                request.layers = parsed;
+                request.board = board;
+                request.side = renderSide;
+                composeBoardGeometry(request, new String[] {"Profile", "Soldermask"}, (p) -> {}, cancelled, null);
+            }
+        });
+    }
+    
+    /**
+     * Precomputes the geometry and tiles needed to view the opposite side of the board so that
+     * flipping the board over is instant. This runs at low priority after a render completes and
+     * gives up as soon as another render is requested. Whatever it manages to finish is kept in
+     * the board geometry and tile cache where the next render will find it.
+     * @param generation - the generation of the render that just completed
+     */
+    private void startSpeculativeRender(long generation) {
+        if (layerMap == null || layerMap.keySet().size() <= 1 || dragInProgress) {
+            return;
+        }
+        RenderRequest request = createRenderRequest(side.equals("Top") ? "Bot" : "Top");
+        BooleanSupplier superseded = () -> renderScheduler.getRequestedGeneration() != generation || 
+                renderScheduler.isRenderInFlight() || renderScheduler.isAborted(generation);
+        speculativeExecutor.execute(() -> {
+            if (superseded.getAsBoolean()) {
+                return;
+            }
+            try {
+                String[] plotOrder = getPlotOrder(request.layers);
+                composeBoardGeometry(request, plotOrder, (p) -> {}, superseded, null);
+                if (!superseded.getAsBoolean()) {
+                    renderMissingTiles(request, plotOrder, superseded, superseded, (total) -> {});
+                }
+            }
+            catch (Exception ex) {
+                //Nothing is lost, a foreground render will construct whatever it needs
+            }
+        });
+    }
+    
+    private void showRenderProgress(double progress) {
+        SwingUtilities.invokeLater(() -> {
+            updateProgressBar(progress);
+            drawingPanel.repaint();
+        });
+    }
+    
+    /**
+     * Called on the Event Dispatch Thread each time the render scheduler finishes a render
+     * @param generation - the generation of the render
+     * @param completed - true if the render ran to completion
+     * @param ex - the exception or error thrown by the render, if any
+     */
+    private void renderFinished(long generation, boolean completed, Throwable ex) {
+        if (ex != null && !renderScheduler.isStale(generation)) {
+            displayStackTrace(ex);
+            cleanUp(ex);
+        }
+        else if (completed) {
+            updateReticleForView();
+            
+            drawingPanel.repaint();
+            drawingPanelUnit.repaint();
+            drawingPanelColumnHeader.repaint();
+            drawingPanelRowHeader.repaint();
+            mntmSaveImage.setEnabled(true);
+            if (layerMap != null && layerMap.keySet().size() > 1) {
+                mntmWritePnPData.setEnabled(true);
+                mntmWriteNetList.setEnabled(true);
+            }
 
-                        cleanUp(null);
+            cleanUp(null);
+            startSpeculativeRender(generation);
+        }
+        else if (renderScheduler.isAborted(generation)) {
+            cleanUp(null);
+        }
+        //Otherwise the render was superseded and the newer render will finish up
+    }
+    
+    /**
+     * Finds the layer with the specified .FileFunction
+     * @param layers - the layers to search
+     * @param function - the .FileFunction of the layer
+     * @param renderSide - the side of the board the layer must be for, or null if any side will do
+     * @return the layer, or null if there is no such layer
+     */
+    private GerberLayer findLayer(Map<String, GerberLayer> layers, String function, String renderSide) {
+        for (String key : layers.keySet()) {
+            List<String> fileFunction = layers.get(key).getFileAttributes().get(".FileFunction").getValues();
+            if (fileFunction.get(0).equals(function) && 
+                    (renderSide == null || (fileFunction.size() > 1 && fileFunction.get(1).equals(renderSide)))) {
+                return layers.get(key);
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Loads composed geometry from the geometry cache
+     * @param kind - the kind of geometry
+     * @param renderSide - the side of the board the geometry is for
+     * @param sources - the layers the geometry is composed from
+     * @return the geometry, or null if it isn't in the cache
+     */
+    private List<Area> loadCachedGeometry(String kind, String renderSide, GerberLayer... sources) {
+        Long start = System.currentTimeMillis();
+        List<Area> areas = geometryCache.load(kind, renderSide, sources);
+        if (areas != null) {
+            textArea.append("Loading " + kind + " from cache... completed in " + 
+                    (System.currentTimeMillis() - start) + " ms\n");
+        }
+        return areas;
+    }
+    
+    /**
+     * Stores composed geometry in the geometry cache. Failing to store it is not an error, it will
+     * just need to be composed again the next time it is needed.
+     * @param kind - the kind of geometry
+     * @param renderSide - the side of the board the geometry is for
+     * @param areas - the geometry
+     * @param sources - the layers the geometry was composed from
+     */
+    private void storeCachedGeometry(String kind, String renderSide, List<Area> areas, GerberLayer... sources) {
+        try {
+            geometryCache.store(kind, renderSide, areas, sources);
+        }
+        catch (IOException ex) {
+            textArea.append("Unable to cache " + kind + ": " + ex.getMessage() + "\n");
+        }
+    }
+    
+    /**
+     * Hashes the contents of a Gerber file before it is restored or parsed
+     * @param file - the file
+     * @return the hash, or null if the file can't be read
+     */
+    private static ContentHash hashContents(File file) {
+        try {
+            return ContentHash.of(file);
+        }
+        catch (IOException ex) {
+            return null;
+        }
+    }
+    
+    /**
+     * Restores a layer from its snapshot
+     * @param file - the layer's Gerber file
+     * @param hash - the hash of the file's contents, may be null
+     * @param attributePool - the pool of the board the layer belongs to
+     * @return the layer, or null if the file has no snapshot
+     */
+    private GerberLayer loadLayerSnapshot(File file, ContentHash hash, AttributePool attributePool) {
+        return hash != null ? layerSnapshot.load(file, hash.getHash(), attributePool) : null;
+    }
+    
+    /**
+     * Writes a snapshot of a layer so that its Gerber file doesn't need to be parsed the next 
+     * time it is viewed. The snapshot is keyed by the hash the layer was parsed with rather than
+     * by hashing the file again, which may have changed since. Failing to write it is not an
+     * error, the file will just need to be parsed again.
+     * @param layer - the layer
+     */
+    private void storeLayerSnapshot(GerberLayer layer) {
+        //Without the hash of the contents that were parsed the snapshot can't be trusted
+        if (layer.getContentHash() == null) {
+            return;
+        }
+        try {
+            layerSnapshot.store(layer, layer.getContentHash());
+        }
+        catch (IOException ex) {
+            SwingUtilities.invokeLater(() -> textArea.append("Unable to snapshot " + 
+                    layer.getGerberFile().getName() + ": " + ex.getMessage() + "\n"));
+        }
+    }
+    
+    /**
+     * Renders the coverage masks of the specified layers of a single tile
+     * @param tile - the tile
+     * @param layers - the indices, in plot order, of the layers to render
+     * @param tileTransform - the transform from object coordinates to tile coordinates
+     * @param tileBounds - the bounds of the tile in object coordinates
+     * @param request - the view being rendered
+     * @param plotOrder - the order in which the layers are to be rendered
+     * @param cancelled - returns true if rendering of the tile should be abandoned
+     * @return true if the tile was completely rendered, false if rendering was cancelled
+     */
+    private boolean renderTile(TileCache.Tile tile, BitSet layers, AffineTransform tileTransform, 
+            Rectangle2D tileBounds, RenderRequest request, String[] plotOrder, BooleanSupplier cancelled) {
+        BoardGeometry board = request.board;
+        String renderSide = request.side;
+        for (int layerIdx = layers.nextSetBit(0); layerIdx >= 0; layerIdx = layers.nextSetBit(layerIdx + 1)) {
+            String function = plotOrder[layerIdx];
+            keyLoop: for (String key : request.layers.keySet()) {
+                GerberLayer layer = request.layers.get(key);
+                LayerAttributes fileAttributes = layer.getFileAttributes();
+                if (function.equals("Anything") || fileAttributes.get(".FileFunction").getValues().get(0).equals(function)) {
+                    boolean darkCovers = true;
+                    switch (function) {
+                        case "Profile":
+                            Area substrateArea = board.substrateArea;
+                            if (substrateArea != null) {
+                                Graphics2D maskScr = createMaskGraphics(tile.getMask(layerIdx));
+                                maskScr.fill(tileTransform.createTransformedShape(substrateArea));
+                                maskScr.dispose();
+                            }
+                            break keyLoop;
+                        case "Copper":
+                            if (!fileAttributes.get(".FileFunction").getValues().get(2).equals(renderSide)) {
+                                continue keyLoop;
+                            }
+                            break;
+                        case "Soldermask":
+                            if (!fileAttributes.get(".FileFunction").getValues().get(1).equals(renderSide)) {
+                                continue keyLoop;
+                            }
+                            if (!Boolean.TRUE.equals(board.solderMaskOpenings.get(renderSide))) {
+                                break keyLoop;
+                            }
+                            if (request.exactSolderMask) {
+                                Area solderMaskArea = board.solderMaskAreas.get(renderSide);
+                                if (solderMaskArea != null) {
+                                    Graphics2D maskScr = createMaskGraphics(tile.getMask(layerIdx));
+                                    maskScr.fill(tileTransform.createTransformedShape(solderMaskArea));
+                                    maskScr.dispose();
+                                }
+                                break keyLoop;
+                            }
+                            //Otherwise the substrate is covered and the mask layer's objects are
+                            //then rendered with their polarities reversed so that dark objects
+                            //open the mask and clear objects fill it back in
+                            Area maskSubstrateArea = board.substrateArea;
+                            if (maskSubstrateArea == null) {
+                                break keyLoop;
+                            }
+                            Graphics2D substrateScr = createMaskGraphics(tile.getMask(layerIdx));
+                            substrateScr.fill(tileTransform.createTransformedShape(maskSubstrateArea));
+                            substrateScr.dispose();
+                            darkCovers = false;
+                            break;
+                        case "Legend":
+                            if (!fileAttributes.get(".FileFunction").getValues().get(1).equals(renderSide)) {
+                                continue keyLoop;
+                            }
+                            List<Area> silkAreas = board.silkAreas.get(renderSide);
+                            if (silkAreas != null) {
+                                Graphics2D maskScr = null;
+                                for (Area silk : silkAreas) {
+                                    if (silk.getBounds2D().intersects(tileBounds)) {
+                                        if (maskScr == null) {
+                                            maskScr = createMaskGraphics(tile.getMask(layerIdx));
+                                        }
+                                        maskScr.fill(tileTransform.createTransformedShape(silk));
+                                    }
+                                }
+                                if (maskScr != null) {
+                                    maskScr.dispose();
+                                }
+                            }
+                            break keyLoop;
+                        case "Plated":
+                        case "NonPlated":
+                        case "Anything":
+                            break;
+                        default:
+                            continue keyLoop;
                     }
-                    catch (CancellationException e) {
-                        //ok
-                        cleanUp(null);
+                    
+                    //Every layer has its own coverage mask so clear objects are rendered by 
+                    //erasing the mask, which uncovers only what this layer's earlier objects 
+                    //covered, rather than by subtracting them from the dark objects' geometry
+                    SpatialIndex<LayerObject> index = getSpatialIndex(board, layer);
+                    Graphics2D maskScr = null;
+                    Graphics2D strokeScr = null;
+                    for (int id : index.query(tileBounds)) {
+                        if (cancelled.getAsBoolean()) {
+                            break;
+                        }
+                        LayerObject go = index.get(id);
+                        Rectangle2D bounds = index.getBounds(id);
+                        if (bounds.getWidth()*request.scale > 2 || bounds.getHeight()*request.scale > 2) {
+                            if (maskScr == null) {
+                                maskScr = createMaskGraphics(tile.getMask(layerIdx));
+                            }
+                            boolean cover = (go.getPolarity() == Polarity.DARK) == darkCovers;
+                            //Repeated shapes, such as pads and vias, are stamped rather than filled
+                            if (stampCache.draw(tile.getMask(layerIdx), go, tileTransform, cover)) {
+                                continue;
+                            }
+                            //Traces are stroked along their center-lines which is much cheaper
+                            //than filling their outlines
+                            if (go.getStrokeWidth() > 0) {
+                                if (strokeScr == null) {
+                                    strokeScr = createStrokeGraphics(tile.getMask(layerIdx), tileTransform);
+                                }
+                                strokeScr.setColor(cover ? Color.WHITE : Color.BLACK);
+                                strokeScr.setStroke(new BasicStroke((float) go.getStrokeWidth(), 
+                                        BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+                                strokeScr.draw(go.getStrokePath());
+                                continue;
+                            }
+                            //Large outlines are simplified as much as they can be without
+                            //straying by more than half a pixel
+                            maskScr.setColor(cover ? Color.WHITE : Color.BLACK);
+                            maskScr.fill(tileTransform.createTransformedShape(go.getShape(0.5/request.scale)));
+                        }
+                    }
+                    if (maskScr != null) {
+                        maskScr.dispose();
                     }
-                    catch (InterruptedException | ExecutionException e) {
-                        // TODO Auto-generated catch block
-                        displayStackTrace(e);
-                        cleanUp(e);
+                    if (strokeScr != null) {
+                        strokeScr.dispose();
                     }
+                    break keyLoop;
                 }
-            };
-              
-            backgroundImageRenderer.execute();
-        }
-        else {
-            if (scrollingBounds == null) {
-                computeViewPortBoundsAndAspectRatio();
             }
-            gerberImage = new BufferedImage((int) scrollingBounds.width, (int) scrollingBounds.height, BufferedImage.TYPE_4BYTE_ABGR);
-            Graphics2D offScr = gerberImage.createGraphics();
-            offScr.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-            offScr.setColor(drawingPanelUnit.getBackground());
-            offScr.fillRect(0, 0, (int) scrollingBounds.width, (int) scrollingBounds.height);
-            offScr.dispose();
-            drawingPanel.repaint();
         }
+        return !cancelled.getAsBoolean();
+    }
+    
+    /**
+     * Builds the spatial index of every layer that doesn't already have one. This only needs to
+     * be done once after the files are parsed.
+     */
+    private void buildSpatialIndices(RenderRequest request) {
+        if (request.board.spatialIndices.size() == request.layers.keySet().size()) {
+            return;
+        }
+        Long start = System.currentTimeMillis();
+        textArea.append("Indexing graphical objects...");
+        for (String key : request.layers.keySet()) {
+            getSpatialIndex(request.board, request.layers.get(key));
+        }
+        textArea.append(" completed in " + (System.currentTimeMillis() - start) + " ms\n");
+    }
+    
+    /**
+     * Gets the spatial index of a layer's graphical objects, building it if necessary
+     * @param board - the board the layer belongs to
+     * @param layer - the layer
+     * @return the spatial index
+     */
+    private SpatialIndex<LayerObject> getSpatialIndex(BoardGeometry board, GerberLayer layer) {
+        //Only a thread wanting the same layer's index waits while it is being built
+        return board.spatialIndices.computeIfAbsent(layer, 
+                (l) -> new SpatialIndex<>(l.getObjects(), (go) -> go.getBounds()));
+    }
+    
+    private Graphics2D createMaskGraphics(BufferedImage mask) {
+        Graphics2D maskScr = mask.createGraphics();
+        maskScr.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        maskScr.setColor(Color.WHITE);
+        return maskScr;
+    }
+    
+    /**
+     * Creates a graphics context for stroking objects into a coverage mask in object coordinates
+     * @param mask - the coverage mask
+     * @param transform - the transform from object coordinates to mask coordinates
+     * @return the graphics context
+     */
+    private Graphics2D createStrokeGraphics(BufferedImage mask, AffineTransform transform) {
+        Graphics2D strokeScr = createMaskGraphics(mask);
+        //Don't let the stroke be nudged onto whole pixels, it must cover exactly what the
+        //object's outline does
+        strokeScr.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        strokeScr.transform(transform);
+        return strokeScr;
+    }
+    
+    private BufferedImage createReticleImage() {
+        BufferedImage image = new BufferedImage((int) scrollingBounds.width, (int) scrollingBounds.height, BufferedImage.TYPE_4BYTE_ABGR);
+        Graphics2D offScr = image.createGraphics();
+        offScr.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        offScr.translate(PIXEL_GAP, (int) scrollingBounds.height - PIXEL_GAP);
+        offScr.scale(1, -1);
+        overlayReticle(offScr);
+        offScr.dispose();
+        return image;
+    }
+    
+    /**
+     * Redraws just the reticle. Since the tiles hold coverage masks rather than colored pixels,
+     * this is all that is needed when the color scheme, units or reticle visibility change.
+     */
+    private void updateReticle() {
+        if (layerSet != null && scrollingBounds != null) {
+            reticleImage = createReticleImage();
+            reticleTransform = new AffineTransform(screenToObjectTransform);
+            reticleBounds = (Rectangle.Double) scrollingBounds.clone();
+        }
+    }
+    
+    /**
+     * Redraws the reticle if the view has changed since it was last drawn. Renders finish after
+     * every step of a drag so the reticle, which covers the whole view, is left alone until the
+     * drag ends.
+     */
+    private void updateReticleForView() {
+        if (dragInProgress || scrollingBounds == null || (scrollingBounds.equals(reticleBounds) && 
+                screenToObjectTransform.equals(reticleTransform))) {
+            return;
+        }
+        updateReticle();
+    }
+    
+    /**
+     * Composes the tiles in view and the reticle into a single image, this is only needed to
+     * save the image since the tiles are painted directly
+     */
+    private void composeGerberImage() {
+        BufferedImage image = new BufferedImage((int) scrollingBounds.width, (int) scrollingBounds.height, BufferedImage.TYPE_4BYTE_ABGR);
+        Graphics2D offScr = image.createGraphics();
+        paintTiles(offScr);
+        offScr.dispose();
+        gerberImage = image;
     }
     
-    private void renderSilkScreen(Graphics2D offScr, GraphicsStream graphicStream, 
-            GraphicsStream solderMaskStream, Consumer<java.lang.Double> showProgress) {
+    /**
+     * Clips the legend objects so that no legend is printed where the solder mask is open. Each
+     * legend object is only clipped against the solder mask objects whose bounds it overlaps as
+     * found by the solder mask layer's spatial index.
+     * @param board - the board the layers belong to
+     * @param legendLayer - the legend layer
+     * @param solderMaskLayer - the solder mask layer, may be null
+     * @param showProgress - receives the fraction of the legend objects clipped so far
+     * @param cancelled - returns true if clipping should be abandoned
+     * @return the clipped areas of the legend objects in drawing order, or null if cancelled
+     */
+    private List<Area> clipSilkScreen(BoardGeometry board, GerberLayer legendLayer, 
+            GerberLayer solderMaskLayer, Consumer<java.lang.Double> showProgress, BooleanSupplier cancelled) {
         Long start = System.currentTimeMillis();
-        textArea.append("Rendering Silkscreen...");
-        double total = graphicStream.getStream().size() * solderMaskStream.getStream().size();
+        textArea.append("Clipping Silkscreen...");
+        SpatialIndex<LayerObject> maskIndex = solderMaskLayer != null ? 
+                getSpatialIndex(board, solderMaskLayer) : null;
+        List<Area> clippedAreas = new ArrayList<>();
+        double total = legendLayer.getObjects().size();
         int count = 0;
-        outerLoop: for (GraphicalObject go : graphicStream.getStream()) {
+        for (LayerObject go : legendLayer.getObjects()) {
+            if (cancelled.getAsBoolean()) {
+                textArea.append(" cancelled\n");
+                return null;
+            }
             Area area = go.getArea();
-            for (GraphicalObject go2 : solderMaskStream.getStream()) {
-                if (backgroundImageRenderer.isCancelled()) {
-                    break outerLoop;
-                }
-                if (area.getBounds2D().intersects(go2.getArea().getBounds2D())) {
-                    area.subtract(go2.getArea());
+            if (maskIndex != null) {
+                for (int id : maskIndex.query(area.getBounds2D())) {
+                    area.subtract(maskIndex.get(id).getArea());
                 }
-                count++;
-                showProgress.accept(count/total);
             }
-            Shape silk = objectToViewTransform.createTransformedShape(area);
-            offScr.fill(silk);
+            clippedAreas.add(area);
+            count++;
+            showProgress.accept(count/total);
         }
         textArea.append(" completed in " + (System.currentTimeMillis() - start) + " ms\n");
+        return clippedAreas;
+    }
+    
+    /**
+     * @param layer - a layer
+     * @return true if any of the layer's objects are dark
+     */
+    private static boolean hasDarkObjects(GerberLayer layer) {
+        for (LayerObject go : layer.getObjects()) {
+            if (go.getPolarity() == Polarity.DARK) {
+                return true;
+            }
+        }
+        return false;
     }
     
-    private Area constructSolderMask(GraphicsStream graphicStream, Area substrateArea, Consumer<java.lang.Double> showProgress) {
+    /**
+     * Constructs the solder mask by removing the mask openings from the board substrate
+     * @param solderMaskLayer - the solder mask layer
+     * @param substrateArea - the board substrate
+     * @param showProgress - receives the fraction of the mask objects processed so far
+     * @param cancelled - returns true if construction should be abandoned
+     * @return the solder mask, or null if cancelled
+     */
+    private Area constructSolderMask(GerberLayer solderMaskLayer, Area substrateArea, 
+            Consumer<java.lang.Double> showProgress, BooleanSupplier cancelled) {
         textArea.append("Constructing Solder Mask...");
         Long start = System.currentTimeMillis();
-        Area maskArea = new Area(substrateArea);
-        double total = graphicStream.getStream().size();
+        //Dark objects open the mask and clear objects fill it back in
+        Area maskArea = combineByPolarity(new Area(substrateArea), solderMaskLayer, false, showProgress, cancelled);
+        if (maskArea == null) {
+            //Don't return a partially constructed mask
+            textArea.append(" cancelled\n");
+            return null;
+        }
+        textArea.append(" completed in " + (System.currentTimeMillis() - start) + " ms\n");
+        return maskArea;
+    }
+    
+    /**
+     * Adds and subtracts the objects of a layer to and from an area. The order of the
+     * objects only matters between runs of objects with different polarities so each run is first
+     * unioned together in a parallel reduction and the area is then only operated on once per run
+     * rather than once for every object.
+     * @param area - the area to start with, this is modified
+     * @param layer - the layer
+     * @param darkAdds - if true, dark objects are added to the area and clear objects are 
+     * subtracted from it, otherwise the reverse
+     * @param showProgress - receives the fraction of the objects processed so far
+     * @param cancelled - returns true if the operation should be abandoned
+     * @return the area, or null if cancelled
+     */
+    private Area combineByPolarity(Area area, GerberLayer layer, boolean darkAdds,
+            Consumer<java.lang.Double> showProgress, BooleanSupplier cancelled) {
+        List<List<Area>> runs = new ArrayList<>();
+        List<Polarity> runPolarities = new ArrayList<>();
+        for (LayerObject go : layer.getObjects()) {
+            if (runs.isEmpty() || go.getPolarity() != runPolarities.get(runs.size() - 1)) {
+                runs.add(new ArrayList<>());
+                runPolarities.add(go.getPolarity());
+            }
+            runs.get(runs.size() - 1).add(go.getArea());
+        }
+        double total = layer.getObjects().size();
         int count = 0;
-        for (GraphicalObject go : graphicStream.getStream()) {
-            if (backgroundImageRenderer.isCancelled()) {
-                break;
+        for (int i=0; i<runs.size(); i++) {
+            final int done = count;
+            final int runSize = runs.get(i).size();
+            Area runArea = AreaUnion.union(runs.get(i), renderPool, 
+                    (p) -> showProgress.accept((done + p*runSize)/total), cancelled);
+            if (runArea == null || cancelled.getAsBoolean()) {
+                return null;
             }
-            if (go.getPolarity() == Polarity.DARK) {
-                maskArea.subtract(go.getArea());
+            if ((runPolarities.get(i) == Polarity.DARK) == darkAdds) {
+                area.add(runArea);
             }
             else {
-                maskArea.add(go.getArea());
+                area.subtract(runArea);
             }
-            count++;
-            showProgress.accept(count/total);
+            count += runSize;
         }
-        
-        textArea.append(" completed in " + (System.currentTimeMillis() - start) + " ms\n");
-        return maskArea;
+        return area;
     }
     
-    private Area constructBoardSubstrate(GraphicsStream graphicStream, Consumer<java.lang.Double> showProgress) {
+    /**
+     * Constructs the board substrate from the profile layer
+     * @param profileLayer - the profile layer
+     * @param units - the units of the profile layer
+     * @param showProgress - receives the fraction of the profile objects processed so far
+     * @param cancelled - returns true if construction should be abandoned
+     * @return the substrate, or null if cancelled
+     */
+    private Area constructBoardSubstrate(GerberLayer profileLayer, Units units, 
+            Consumer<java.lang.Double> showProgress, BooleanSupplier cancelled) {
         textArea.append("Constructing board substrate...");
         Long start = System.currentTimeMillis();
-        //First construct an Area object from all the graphic stream objects
+        //First construct an Area object from all the profile layer's objects
         List<Path2D> profilePathList = new ArrayList<>();
-        Area boardProfile = new Area();
-        double total = graphicStream.getStream().size();
-        int count = 0;
-        for (GraphicalObject go : graphicStream.getStream()) {
-            if (go.getMetaData().getStrokeInfo().getPath() != null) {
-                profilePathList.add(go.getMetaData().getStrokeInfo().getPath());
-            }
-            if (go.getPolarity() == Polarity.DARK) {
-                boardProfile.add(go.getArea());
-            }
-            else {
-                boardProfile.subtract(go.getArea());
+        for (LayerObject go : profileLayer.getObjects()) {
+            if (go.getStrokePath() != null) {
+                profilePathList.add(go.getStrokePath());
             }
-            count++;
-            showProgress.accept(count/total);
+        }
+        Area boardProfile = combineByPolarity(new Area(), profileLayer, true, showProgress, cancelled);
+        if (boardProfile == null) {
+            textArea.append(" cancelled\n");
+            return null;
         }
 
         //Now we don't know if the profile is represented by a Region using G36/G37 commands or
@@ -1109,23 +1942,9 @@ public class GerberViewer extends JFrame {
         //within another. If we find one, it means the profile couldn't have been defined by
         //a region otherwise a hole has another hole within it and that can't happen.
         profilePaths.remove(largestAreaPath);
-        boolean region = true;
-        outerLoop: for (int i=0; i<profilePaths.size()-1; i++) {
-            Path2D holePath1 = profilePaths.get(i);
-            Area area1 = new Area(holePath1);
-            for (int j=i+1; j<profilePaths.size(); j++) {
-                Path2D holePath2 = profilePaths.get(j);
-                Area area2 = new Area(holePath2);
-                Area testArea = new Area(area1);
-                testArea.add(area2);
-                if (testArea.equals(area1) || testArea.equals(area2)) {
-                    //one of the paths was wholly contained within the other so this must have
-                    //been defined using draws and arcs (strokes) and not by a region
-                    region = false;
-                    break outerLoop;
-                }
-            }
-        }
+        //If one of the paths is wholly contained within another, this must have been defined
+        //using draws and arcs (strokes) and not by a region
+        boolean region = !anyPathContainsAnother(profilePaths);
         
         //Now we check for the case where there are only two paths - this could mean the profile is
         //defined by a region with a single hole in it, or it could be defined by a single closed 
@@ -1136,7 +1955,7 @@ public class GerberViewer extends JFrame {
         if (region && profilePaths.size() == 1) {
             avgStrokeWidth = 2*(largestArea-secondLargestArea)/
                     (computeGeometricPerimeter(largestAreaPath) + computeGeometricPerimeter(secondLargestAreaPath));
-            if (parserMap.get(parserMap.keySet().toArray()[0]).getUnits() == Units.INCHES) {
+            if (units == Units.INCHES) {
                 avgStrokeWidth *= 25.4; //convert to millimeters
             }
             if (avgStrokeWidth < 2) {
@@ -1146,6 +1965,7 @@ public class GerberViewer extends JFrame {
         }
         
         if (region) {
+            textArea.append(" completed in " + (System.currentTimeMillis() - start) + " ms\n");
             return boardProfile;
         }
         
@@ -1184,34 +2004,19 @@ public class GerberViewer extends JFrame {
             endings.add(end);
         }
         
+        //Chain the strokes end to end, at each step picking the stroke with an endpoint nearest to 
+        //the end of the chain so far
+        EndpointGrid endpoints = new EndpointGrid(beginings, endings);
         Path2D orderedProfilePath = new Path2D.Double(profilePathList.get(0));
         Point2D firstBegining = beginings.get(0);
         Point2D lastEnd = endings.get(0);
-        profilePathList.remove(0);
-        beginings.remove(0);
-        endings.remove(0);
-        while (!profilePathList.isEmpty()) {
-        
-            boolean flip = false;
-            int bestIdx = 0;
-            double minDist = java.lang.Double.POSITIVE_INFINITY;
-            for (int i=0; i<beginings.size(); i++) {
-                Point2D pt = beginings.get(i);
-                double dist = lastEnd.distance(pt);
-                if (dist < minDist) {
-                    minDist = dist;
-                    bestIdx = i;
-                }
-            }
-            for (int i=0; i<endings.size(); i++) {
-                Point2D pt = endings.get(i);
-                double dist = lastEnd.distance(pt);
-                if (dist < minDist) {
-                    minDist = dist;
-                    bestIdx = i;
-                    flip = true;
-                }
-            }
+        endpoints.remove(0);
+        int firstRemaining = 1;
+        while (endpoints.size() > 0) {
+            int id = endpoints.nearest(lastEnd);
+            int bestIdx = id/2;
+            boolean flip = id%2 == 1;
+            double minDist = lastEnd.distance(endpoints.getPoint(id));
             
             Path2D next = profilePathList.get(bestIdx);
             
@@ -1222,21 +2027,20 @@ public class GerberViewer extends JFrame {
             else {
                 lastEnd = endings.get(bestIdx);
             }
-            profilePathList.remove(bestIdx);
-            beginings.remove(bestIdx);
-            endings.remove(bestIdx);
+            endpoints.remove(bestIdx);
             
             orderedProfilePath.append(next, minDist < avgStrokeWidth/2);
             
             if (lastEnd.distance(firstBegining) < avgStrokeWidth/2) {
                 orderedProfilePath.closePath();
-                if (!profilePathList.isEmpty()) {
-                    orderedProfilePath.append(profilePathList.get(0), false);
-                    firstBegining = beginings.get(0);
-                    lastEnd = endings.get(0);
-                    profilePathList.remove(0);
-                    beginings.remove(0);
-                    endings.remove(0);
+                if (endpoints.size() > 0) {
+                    while (endpoints.isRemoved(firstRemaining)) {
+                        firstRemaining++;
+                    }
+                    orderedProfilePath.append(profilePathList.get(firstRemaining), false);
+                    firstBegining = beginings.get(firstRemaining);
+                    lastEnd = endings.get(firstRemaining);
+                    endpoints.remove(firstRemaining);
                 }
             }
             
@@ -1247,6 +2051,47 @@ public class GerberViewer extends JFrame {
         return ret;
     }
     
+    /**
+     * Checks if any of the closed paths lies wholly inside another. The closed paths of an Area
+     * never cross one another so a path is inside another if its bounds are within the other's
+     * bounds and any one of its vertices is inside the other. Only pairs whose bounds overlap in x
+     * are examined by sweeping across the paths in order of their left edges.
+     * @param closedPaths - the closed paths of an Area
+     * @return true if a path is contained within another
+     */
+    private boolean anyPathContainsAnother(List<Path2D> closedPaths) {
+        int n = closedPaths.size();
+        Rectangle2D[] bounds = new Rectangle2D[n];
+        Point2D[] vertices = new Point2D[n];
+        Integer[] order = new Integer[n];
+        double[] coords = new double[6];
+        for (int i=0; i<n; i++) {
+            bounds[i] = closedPaths.get(i).getBounds2D();
+            closedPaths.get(i).getPathIterator(null).currentSegment(coords);
+            vertices[i] = new Point2D.Double(coords[0], coords[1]);
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble((Integer i) -> bounds[i].getMinX()));
+        for (int a=0; a<n; a++) {
+            int i = order[a];
+            for (int b=a+1; b<n && bounds[order[b]].getMinX() <= bounds[i].getMaxX(); b++) {
+                int j = order[b];
+                if (contains(bounds[i], bounds[j]) && closedPaths.get(i).contains(vertices[j])) {
+                    return true;
+                }
+                if (contains(bounds[j], bounds[i]) && closedPaths.get(j).contains(vertices[i])) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    private static boolean contains(Rectangle2D outer, Rectangle2D inner) {
+        return inner.getMinX() >= outer.getMinX() && inner.getMaxX() <= outer.getMaxX() &&
+                inner.getMinY() >= outer.getMinY() && inner.getMaxY() <= outer.getMaxY();
+    }
+    
     private double computeGeometricArea(Path2D closedPath) {
         PathIterator pathIter = closedPath.getPathIterator(null, 0.001);
         double[] coords = new double[6];
@@ -1313,10 +2158,10 @@ public class GerberViewer extends JFrame {
     
     private void overlayReticle(Graphics2D offScr) {
         double unitScaling = 1;
-        if (displayUnits.equals("Metric") && parserMap.get(parserMap.keySet().toArray()[0]).getUnits()==Units.INCHES) {
+        if (displayUnits.equals("Metric") && layerMap.get(layerMap.keySet().toArray()[0]).getUnits()==Units.INCHES) {
             unitScaling = 25.4;
         }
-        else if (displayUnits.equals("Imperial") && parserMap.get(parserMap.keySet().toArray()[0]).getUnits()==Units.MILLIMETERS) {
+        else if (displayUnits.equals("Imperial") && layerMap.get(layerMap.keySet().toArray()[0]).getUnits()==Units.MILLIMETERS) {
             unitScaling = 1.0/25.4;
         }
         
@@ -1344,7 +2189,7 @@ public class GerberViewer extends JFrame {
             unitsPerTick = unitsPerDivision / 10;
         }
         
-        if (displayUnits.equals("Metric") || (displayUnits.equals("Native") && parserMap.get(parserMap.keySet().toArray()[0]).getUnits()==Units.MILLIMETERS)) {
+        if (displayUnits.equals("Metric") || (displayUnits.equals("Native") && layerMap.get(layerMap.keySet().toArray()[0]).getUnits()==Units.MILLIMETERS)) {
             if (unitsPerDivision > 10) {
                 displayUnit = "cm";
                 displayMultiplier = 0.1;
@@ -1535,6 +2380,44 @@ public class GerberViewer extends JFrame {
         offScr.dispose();
     }
 
+    /**
+     * A Gerber file that has either been restored from its snapshot or is ready to be parsed
+     */
+    private static class LayerFile {
+        final File file;
+        //The pool of the board the file belongs to
+        final AttributePool attributePool;
+        ContentHash hash;
+        //From the file's header, or -1 if it isn't known
+        int coordinateDecimals = -1;
+        GerberLayer snapshot;
+        GerberFileReader reader;
+        
+        LayerFile(File file, AttributePool attributePool) {
+            this.file = file;
+            this.attributePool = attributePool;
+        }
+        
+        /**
+         * @return the hash of the file's contents if they haven't changed since they were hashed,
+         * otherwise null
+         */
+        String getCurrentHash() {
+            return hash != null ? hash.getCurrentHash() : null;
+        }
+    }
+    
+    /**
+     * The Gerber files of a board once they have been found and opened
+     */
+    private static class BoardFiles {
+        GerberArchive archive;
+        //The layers restored from their snapshots, the parsed layers are added as they finish
+        final Map<String, GerberLayer> layers = new ConcurrentHashMap<>();
+        //The files that need to be parsed
+        final Map<String, LayerFile> parsers = new HashMap<>();
+    }
+
     public final Action openFileAction = new AbstractAction() {
         {
             putValue(NAME, "View Single Gerber File..."); //$NON-NLS-1$
@@ -1564,40 +2447,86 @@ public class GerberViewer extends JFrame {
             mnOptions.setEnabled(false);
             btnAbort.setEnabled(true);
 
-            parserMap = null;
+            stopWatching();
+            layerMap = null;
+            boardGeometry = new BoardGeometry();
             renderGerberImage();
             textArea.setText(null);
-            GerberFileReader gerberFileReader = null;
             
-            try {
-                File file = new File(new File(fileDialog.getDirectory()), fileDialog.getFile());
+            File file = new File(new File(fileDialog.getDirectory()), fileDialog.getFile());
+            setTitle("GerberViewer - " + file.toString());
+            long start = System.currentTimeMillis();
+            //A file that has been viewed before doesn't need to be parsed again
+            loadInBackground(() -> openLayerFile(file, new AttributePool()), 
+                    (layerFile) -> {
+                        if (layerFile.snapshot != null) {
+                            textArea.append("Loading snapshot... completed in " + (System.currentTimeMillis() - start) + " ms\n");
+                            viewSingleLayer(layerFile.snapshot);
+                        }
+                        else {
+                            parseSingleLayer(layerFile);
+                        }
+                    }, 
+                    (ex) -> cleanUp(ex));
+        }
+    };
 
-                setTitle("GerberViewer - " + file.toString());
-                parserMap = new HashMap<>();
-                gerberFileReader = new GerberFileReader(file);
-//                gerberFileReader.parseFileHeaderOnly();
-                AttributeDictionary fileAttributes = gerberFileReader.getFileAttributes();
-                Attribute fileFunction = fileAttributes.get(".FileFunction");
-                if (fileFunction != null) {
-                    parserMap.put(fileFunction.getValues().get(0), gerberFileReader);
-                    textArea.append("-----------------------\n");
-                    textArea.append("File = " + gerberFileReader.getGerberFile().getName() + ", with attributes:\n");
-                    for (String attKey : fileAttributes.keySet()) {
-                        textArea.append(fileAttributes.get(attKey).toString() + "\n");
-                    }
-                }
-                else {
-                    parserMap.put("Test", gerberFileReader);
-                }
-                gerberFileReader.parseFileInBackground((p) -> updateProgressBar(p), 
-                        () -> drawGerberImage(), (ex) -> cleanUp(ex));
-            }
-            catch (Exception e) {
-                cleanUp(e);
+    /**
+     * Parses a single Gerber file that has no snapshot and then views it
+     * @param layerFile - the file
+     */
+    private void parseSingleLayer(LayerFile layerFile) {
+        GerberFileReader gerberFileReader = layerFile.reader;
+        activeReader = gerberFileReader;
+        ParsePreview preview = createParsePreview();
+        preview.addReader(gerberFileReader, colorScheme.copperColor, true);
+        startParsePreview(preview);
+        try {
+            gerberFileReader.parseFileInBackground((p) -> {
+                        preview.readerProgressed(gerberFileReader);
+                        updateProgressBar(p);
+                    }, 
+                    () -> {
+                        activeReader = null;
+                        preview.readerFinished(gerberFileReader);
+                        GerberLayer layer = GerberLayer.from(gerberFileReader, layerFile.file, 
+                                layerFile.getCurrentHash(), layerFile.coordinateDecimals, layerFile.attributePool);
+                        ioExecutor.execute(() -> storeLayerSnapshot(layer));
+                        SwingUtilities.invokeLater(() -> viewSingleLayer(layer));
+                    }, 
+                    (ex) -> {
+                        activeReader = null;
+                        SwingUtilities.invokeLater(() -> cleanUp(ex));
+                    });
+        }
+        catch (Exception e) {
+            activeReader = null;
+            cleanUp(e);
+        }
+    }
+
+    /**
+     * Displays the file attributes of a single layer and views it
+     * @param layer - the layer
+     */
+    private void viewSingleLayer(GerberLayer layer) {
+        Map<String, GerberLayer> layers = new HashMap<>();
+        LayerAttributes fileAttributes = layer.getFileAttributes();
+        LayerAttribute fileFunction = fileAttributes.get(".FileFunction");
+        if (fileFunction != null) {
+            layers.put(fileFunction.getValues().get(0), layer);
+            textArea.append("-----------------------\n");
+            textArea.append("File = " + layer.getGerberFile().getName() + ", with attributes:\n");
+            for (String attKey : fileAttributes.keySet()) {
+                textArea.append(fileAttributes.get(attKey).toString() + "\n");
             }
-            
         }
-    };
+        else {
+            layers.put("Test", layer);
+        }
+        layerMap = layers;
+        drawGerberImage();
+    }
 
     public final Action loadDirAction = new AbstractAction() {
         {
@@ -1607,19 +2536,18 @@ public class GerberViewer extends JFrame {
         @Override
         public void actionPerformed(ActionEvent arg0) {
             FileDialog fileDialog = new FileDialog(GerberViewer.this);
-            fileDialog.setTitle("Select any one of the board's Gerber files...");
+            fileDialog.setTitle("Select any one of the board's Gerber files, or a zip archive of them...");
             fileDialog.setFilenameFilter(new FilenameFilter() {
                 @Override
                 public boolean accept(File dir, String name) {
-                    return name.toLowerCase().endsWith(".gbr"); //$NON-NLS-1$
+                    return name.toLowerCase().endsWith(".gbr") || name.toLowerCase().endsWith(".zip"); //$NON-NLS-1$
                 }
             });
-            fileDialog.setFile("*.gbr");
+            fileDialog.setFile("*.gbr;*.zip");
             fileDialog.setVisible(true);
             if (fileDialog.getFile() == null) {
                 return;
             }            
-            File dir = new File(fileDialog.getDirectory());
             File file = new File(new File(fileDialog.getDirectory()), fileDialog.getFile());
             
             
@@ -1631,112 +2559,300 @@ public class GerberViewer extends JFrame {
             btnAbort.setEnabled(true);
 
             textArea.append("Searching for Gerber files...");
-            Long start = System.currentTimeMillis();
-            try {
-                String sameCoordinatesString = "";
-                if (file != null) {
-                    GerberFileReader parser = new GerberFileReader(file);
-//                    parser.parseFileHeaderOnly();
-                    AttributeDictionary fileAttributes = parser.getFileAttributes();
-                    if (fileAttributes == null) {
-                        throw new Exception("Selected file has no file attributes. In order to view an image of a board, its Gerber files must follow the GerberX2 specification.");
-                    }
-                    Attribute sameCoordinatesAttribute = fileAttributes.get(".SameCoordinates");
-                    if (sameCoordinatesAttribute == null) {
-                        throw new Exception("Selected file has no \".SameCoordinates\" file attribute. In order to view an image of a board, its Gerber files must follow the GerberX2 specification.");
-                    }
-                    sameCoordinatesString = sameCoordinatesAttribute.getValues().get(0);
+            long start = System.currentTimeMillis();
+            loadInBackground(() -> findBoardFiles(file, start), 
+                    (boardFiles) -> parseBoardFiles(boardFiles), 
+                    (ex) -> {
+                        textArea.append("\nParsing Gerber files aborted in " + (System.currentTimeMillis() - start) + " ms\n");
+                        cleanUp(ex);
+                    });
+        }
+    };
+
+    /**
+     * Finds the Gerber files of the board that the selected file belongs to, restores those that
+     * have been viewed before from their snapshots, and creates readers for the rest. This reads,
+     * and for an archive decompresses, many files so it runs on the loader thread.
+     * @param file - the Gerber file the user selected, or the archive of the board's files
+     * @param start - when the search started
+     * @return the board's files
+     * @throws Exception if the selected file doesn't identify a board
+     */
+    private BoardFiles findBoardFiles(File file, long start) throws Exception {
+        String sameCoordinatesString = "";
+        List<CompletableFuture<GerberHeader>> headerReads = new ArrayList<>();
+        final GerberArchive archive = file.getName().toLowerCase().endsWith(".zip") ? 
+                GerberArchive.scan(file, ioExecutor) : null;
+        if (archive != null) {
+            //The archive's entries have already been scanned so the board is the one the
+            //first file with a .SameCoordinates attribute belongs to
+            List<String> sameCoordinatesValues = null;
+            for (GerberHeader header : archive.getHeaders()) {
+                if (sameCoordinatesValues == null) {
+                    sameCoordinatesValues = header.getValues(".SameCoordinates");
                 }
-                File[] files = dir.listFiles();
-                parserMap = new HashMap<>();
-                for (File gerberFile : files) {
-                    if (gerberFile.getName().toLowerCase().endsWith(".gbr")) {
-                        GerberFileReader parser = new GerberFileReader(gerberFile);
-//                        parser.parseFileHeaderOnly();
-                        AttributeDictionary fileAttributes = parser.getFileAttributes();
-                        if (fileAttributes == null) {
-                            continue;
-                        }
-                        Attribute testSameCoordinatesAttribute = fileAttributes.get(".SameCoordinates");
-                        if (testSameCoordinatesAttribute == null) {
-                            continue;
+                headerReads.add(CompletableFuture.completedFuture(header));
+            }
+            if (sameCoordinatesValues == null) {
+                throw new Exception("Selected archive has no Gerber files with a \".SameCoordinates\" file attribute. In order to view an image of a board, its Gerber files must follow the GerberX2 specification.");
+            }
+            sameCoordinatesString = sameCoordinatesValues.isEmpty() ? "" : sameCoordinatesValues.get(0);
+        }
+        else {
+            GerberHeader header = GerberHeader.read(file);
+            if (!header.hasAttributes()) {
+                throw new Exception("Selected file has no file attributes. In order to view an image of a board, its Gerber files must follow the GerberX2 specification.");
+            }
+            List<String> sameCoordinatesValues = header.getValues(".SameCoordinates");
+            if (sameCoordinatesValues == null) {
+                throw new Exception("Selected file has no \".SameCoordinates\" file attribute. In order to view an image of a board, its Gerber files must follow the GerberX2 specification.");
+            }
+            sameCoordinatesString = sameCoordinatesValues.isEmpty() ? "" : sameCoordinatesValues.get(0);
+            
+            //Only the headers of the files are read, and in parallel, since the directory 
+            //may hold the files of many boards or many revisions of the same board
+            for (File gerberFile : file.getParentFile().listFiles()) {
+                if (gerberFile.getName().toLowerCase().endsWith(".gbr")) {
+                    headerReads.add(CompletableFuture.supplyAsync(() -> {
+                        try {
+                            return GerberHeader.read(gerberFile);
                         }
-                        String testSameCoordinatesString = "";
-                        testSameCoordinatesString = testSameCoordinatesAttribute.getValues().get(0);
-                        //We only want to keep files that have the .SameCoordinates attribute value
-                        //as the file that the user selected
-                        if (sameCoordinatesString.equals(testSameCoordinatesString)) {
-                            //But in the event multiple files with the same .FileFunction attributes
-                            //are found, we only want to keep the latest one
-                            if (parserMap.containsKey(fileAttributes.get(".FileFunction").toString())) {
-                                String prevDateTime = parserMap.get(fileAttributes.get(".FileFunction").toString()).
-                                        getFileAttributes().get(".CreationDate").getValues().get(0);
-                                String currDataTime = fileAttributes.get(".CreationDate").getValues().get(0);
-                                if (currDataTime.compareTo(prevDateTime) <= 0) {
-                                    break;
-                                }
-                            }
-                            parserMap.put(fileAttributes.get(".FileFunction").toString(), parser);
+                        catch (IOException ex) {
+                            //Skip any file that can't be read
+                            return null;
                         }
+                    }, ioExecutor));
+                }
+            }
+        }
+        Map<String, GerberHeader> selectedHeaders = new HashMap<>();
+        for (CompletableFuture<GerberHeader> headerRead : headerReads) {
+            GerberHeader header = headerRead.join();
+            if (header == null || !header.hasAttributes()) {
+                continue;
+            }
+            List<String> testSameCoordinatesValues = header.getValues(".SameCoordinates");
+            List<String> fileFunction = header.getValues(".FileFunction");
+            if (testSameCoordinatesValues == null || fileFunction == null) {
+                continue;
+            }
+            String testSameCoordinatesString = testSameCoordinatesValues.isEmpty() ? "" : testSameCoordinatesValues.get(0);
+            //We only want to keep files that have the .SameCoordinates attribute value
+            //as the file that the user selected
+            if (sameCoordinatesString.equals(testSameCoordinatesString)) {
+                //But in the event multiple files with the same .FileFunction attributes
+                //are found, we only want to keep the latest one
+                String functionKey = String.join(",", fileFunction);
+                GerberHeader prevHeader = selectedHeaders.get(functionKey);
+                if (prevHeader != null) {
+                    String prevDateTime = getCreationDate(prevHeader);
+                    String currDataTime = getCreationDate(header);
+                    if (currDataTime.compareTo(prevDateTime) <= 0) {
+                        continue;
                     }
                 }
-                textArea.append(" completed in " + (System.currentTimeMillis() - start) + " ms\n");
+                selectedHeaders.put(functionKey, header);
+            }
+        }
+        
+        long searchTime = System.currentTimeMillis() - start;
+        SwingUtilities.invokeLater(() -> textArea.append(" completed in " + searchTime + " ms\nLoading snapshots..."));
+        
+        //Restore the layers that have been viewed before from their snapshots, in parallel
+        long snapshotStart = System.currentTimeMillis();
+        Map<GerberHeader, CompletableFuture<LayerFile>> snapshotLoads = new HashMap<>();
+        //All the layers of the board share their attributes
+        AttributePool attributePool = new AttributePool();
+        for (GerberHeader header : selectedHeaders.values()) {
+            snapshotLoads.put(header, CompletableFuture.supplyAsync(() -> {
+                LayerFile layerFile = new LayerFile(header.getFile(), attributePool);
+                //The entries of an archive were hashed as it was scanned
+                layerFile.hash = archive != null ? ContentHash.of(archive.getHash(header.getFile())) : 
+                    hashContents(header.getFile());
+                layerFile.coordinateDecimals = header.getCoordinateDecimals();
+                layerFile.snapshot = loadLayerSnapshot(header.getFile(), layerFile.hash, attributePool);
+                return layerFile;
+            }, ioExecutor));
+        }
+        BoardFiles boardFiles = new BoardFiles();
+        boardFiles.archive = archive;
+        for (GerberHeader header : selectedHeaders.values()) {
+            LayerFile layerFile = snapshotLoads.get(header).join();
+            if (layerFile.snapshot != null) {
+                LayerAttribute fileFunction = layerFile.snapshot.getFileAttributes().get(".FileFunction");
+                if (fileFunction != null) {
+                    boardFiles.layers.put(fileFunction.toString(), layerFile.snapshot);
+                }
+                continue;
+            }
+            //Only the files without a snapshot get readers, and since a reader can only 
+            //read from a file, only those files are extracted from an archive
+            File parserFile = archive != null ? archive.extract(header.getFile()) : header.getFile();
+            layerFile.reader = new GerberFileReader(parserFile);
+            AttributeDictionary fileAttributes = layerFile.reader.getFileAttributes();
+            if (fileAttributes == null || fileAttributes.get(".FileFunction") == null) {
+                if (archive != null) {
+                    parserFile.delete();
+                }
+                continue;
+            }
+            boardFiles.parsers.put(fileAttributes.get(".FileFunction").toString(), layerFile);
+        }
+        long snapshotTime = System.currentTimeMillis() - snapshotStart;
+        SwingUtilities.invokeLater(() -> textArea.append(" " + boardFiles.layers.size() + " of " + 
+                selectedHeaders.size() + " found, completed in " + snapshotTime + " ms\n"));
+        return boardFiles;
+    }
 
-                //Start parsing each file on its own thread
-                textArea.append("Parsing Gerber files...\n");
-                start = System.currentTimeMillis();
-                final long start2 = start;
-                for (String key : parserMap.keySet()) {
-                    GerberFileReader parser = parserMap.get(key);
-                    textArea.append("File = " + parser.getGerberFile().getName() + ", with attributes:\n");
-                    AttributeDictionary fileAttributes = parser.getFileAttributes();
-                    for (String attKey : fileAttributes.keySet()) {
-                        textArea.append("    " + fileAttributes.get(attKey).toString() + "\n");
-                    }
-                    parser.parseFileInBackground(null, null, null);
+    /**
+     * Views a board once its files have been found, parsing those that weren't restored from
+     * their snapshots
+     * @param boardFiles - the board's files
+     */
+    private void parseBoardFiles(BoardFiles boardFiles) {
+        final Map<String, GerberLayer> layers = boardFiles.layers;
+        final Map<String, GerberFileReader> parsers = new HashMap<>();
+        for (String key : boardFiles.parsers.keySet()) {
+            parsers.put(key, boardFiles.parsers.get(key).reader);
+        }
+        //Parse the remaining files in parallel but never more of them at once than there 
+        //are cores
+        textArea.append("Parsing Gerber files...\n");
+        final long start = System.currentTimeMillis();
+        for (String key : layers.keySet()) {
+            GerberLayer layer = layers.get(key);
+            textArea.append("File = " + layer.getGerberFile().getName() + " (snapshot), with attributes:\n");
+            LayerAttributes fileAttributes = layer.getFileAttributes();
+            for (String attKey : fileAttributes.keySet()) {
+                textArea.append("    " + fileAttributes.get(attKey).toString() + "\n");
+            }
+        }
+        for (String key : parsers.keySet()) {
+            GerberFileReader parser = parsers.get(key);
+            textArea.append("File = " + boardFiles.parsers.get(key).file.getName() + ", with attributes:\n");
+            AttributeDictionary fileAttributes = parser.getFileAttributes();
+            for (String attKey : fileAttributes.keySet()) {
+                textArea.append("    " + fileAttributes.get(attKey).toString() + "\n");
+            }
+        }
+        stopWatching();
+        layerMap = null;
+        boardGeometry = new BoardGeometry();
+        final BoardGeometry board = boardGeometry;
+        final ParallelParser parallelParser = new ParallelParser(Runtime.getRuntime().availableProcessors(), parsers);
+        GerberViewer.this.parallelParser = parallelParser;
+        if (!layers.isEmpty()) {
+            precomposeBoardGeometry(new HashMap<>(layers), board, 
+                    () -> parallelParser.isCancelled() || boardGeometry != board);
+        }
+        //Show the top of the board filling in while it is parsed
+        ParsePreview preview = createParsePreview();
+        for (String function : new String[] {"Profile", "Copper", "Legend"}) {
+            for (GerberLayer layer : layers.values()) {
+                Color color = getPreviewColor(function, layer.getFileAttributes().get(".FileFunction").getValues());
+                if (color != null) {
+                    preview.addLayer(layer, color, false);
                 }
-                
-                //Setup another background thread to wait for all the parsers to complete
-                SwingWorker<Void, java.lang.Double> backgroundWorker = new SwingWorker<Void, java.lang.Double>() {
-                    @Override
-                    protected Void doInBackground() throws Exception {
-                        int completed = 0;
-                        double total = parserMap.keySet().size();
-                        while (completed < total) {
-                            completed = 0;
-                            for (String key : parserMap.keySet()) {
-                                if (parserMap.get(key).isDone()) {
-                                    completed++;
-                                }
-                            }
-                            publish(completed/total);
-                        }
-                        return null;
-                    }
-                    
-                    @Override
-                    protected void process(List<java.lang.Double> chunkOfWork) {
-                        for (java.lang.Double progress : chunkOfWork) {
-                            updateProgressBar(progress);
-                        }
+            }
+            for (GerberFileReader parser : parsers.values()) {
+                Color color = getPreviewColor(function, parser.getFileAttributes().get(".FileFunction").getValues());
+                if (color != null) {
+                    preview.addReader(parser, color, false);
+                }
+            }
+        }
+        startParsePreview(preview);
+        parallelParser.start((p) -> SwingUtilities.invokeLater(() -> updateProgressBar(p)), 
+                (parser) -> preview.readerProgressed(parser), 
+                (key) -> {
+                    LayerFile layerFile = boardFiles.parsers.get(key);
+                    preview.readerFinished(layerFile.reader);
+                    GerberLayer layer = GerberLayer.from(layerFile.reader, layerFile.file, 
+                            layerFile.getCurrentHash(), layerFile.coordinateDecimals, layerFile.attributePool);
+                    if (boardFiles.archive != null) {
+                        layerFile.reader.getGerberFile().delete();
                     }
-                    
-                    @Override
-                    protected void done() {
-                        textArea.append("Parsing Gerber files completed in " + (System.currentTimeMillis() - start2) + " ms\n");
-
+                    layers.put(key, layer);
+                    ioExecutor.execute(() -> storeLayerSnapshot(layer));
+                    //Start on whatever board geometry can be constructed from the layers 
+                    //parsed so far while the remaining layers are still being parsed
+                    precomposeBoardGeometry(new HashMap<>(layers), board, 
+                            () -> parallelParser.isCancelled() || boardGeometry != board);
+                }).whenComplete((v, ex) -> SwingUtilities.invokeLater(() -> {
+                    if (ex == null) {
+                        textArea.append("Parsing Gerber files completed in " + (System.currentTimeMillis() - start) + " ms\n");
+                        layerMap = layers;
                         drawGerberImage();
                     }
-                };
-                
-                backgroundWorker.execute();
+                    else {
+                        textArea.append("Parsing Gerber files aborted in " + (System.currentTimeMillis() - start) + " ms\n");
+                        Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+                        cleanUp(cause instanceof Exception && !(cause instanceof CancellationException) ? 
+                                (Exception) cause : null);
+                    }
+                }));
+    }
+
+    /**
+     * Runs the slow part of a load, such as reading headers and restoring snapshots, on the
+     * loader thread and hands its result to the Event Dispatch Thread. If the load is aborted
+     * while the task is running, the task's result is discarded.
+     * @param task - the task
+     * @param loaded - receives the task's result on the Event Dispatch Thread
+     * @param failed - receives the exception the task threw on the Event Dispatch Thread, or null
+     * if the load was aborted
+     */
+    private <T> void loadInBackground(Callable<T> task, Consumer<T> loaded, Consumer<Exception> failed) {
+        CompletableFuture<T> load = CompletableFuture.supplyAsync(() -> {
+            try {
+                return task.call();
             }
-            catch (Exception e) {
-                textArea.append("\nParsing Gerber files aborted in " + (System.currentTimeMillis() - start) + " ms\n");
-                cleanUp(e);
+            catch (Exception ex) {
+                throw new CompletionException(ex);
             }
+        }, loadExecutor);
+        pendingLoad = load;
+        load.whenComplete((result, ex) -> SwingUtilities.invokeLater(() -> {
+            if (pendingLoad == load) {
+                pendingLoad = null;
+            }
+            if (ex == null) {
+                loaded.accept(result);
+            }
+            else {
+                Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+                failed.accept(cause instanceof Exception && !(cause instanceof CancellationException) ? 
+                        (Exception) cause : null);
+            }
+        }));
+    }
+
+    /**
+     * Restores a Gerber file from its snapshot or, if it has none, creates a reader for it. This
+     * reads the whole file so it must not be called on the Event Dispatch Thread.
+     * @param file - the file
+     * @param attributePool - the pool of the board the file belongs to
+     * @return the file
+     * @throws Exception if a reader can't be created for the file
+     */
+    private LayerFile openLayerFile(File file, AttributePool attributePool) throws Exception {
+        LayerFile layerFile = new LayerFile(file, attributePool);
+        layerFile.hash = hashContents(file);
+        //The file's header was read as it was hashed
+        if (layerFile.hash != null) {
+            layerFile.coordinateDecimals = layerFile.hash.getHeader().getCoordinateDecimals();
         }
-    };
+        layerFile.snapshot = loadLayerSnapshot(file, layerFile.hash, attributePool);
+        if (layerFile.snapshot == null) {
+            layerFile.reader = new GerberFileReader(file);
+        }
+        return layerFile;
+    }
+
+    private static String getCreationDate(GerberHeader header) {
+        List<String> creationDate = header.getValues(".CreationDate");
+        return creationDate != null && !creationDate.isEmpty() ? creationDate.get(0) : "";
+    }
 
     public final Action saveImageAction = new AbstractAction() {
         {
@@ -1781,6 +2897,9 @@ public class GerberViewer extends JFrame {
                 return;
             }
             File file = new File(new File(fileDialog.getDirectory()), filename);
+            if (layerSet != null) {
+                composeGerberImage();
+            }
             try {
                 if (!ImageIO.write(gerberImage, validTypes[typeIdx], file)) {
                     textArea.append("ERROR - Appropriate writer not found for type " + validTypes[typeIdx] + "\n");
@@ -1819,15 +2938,15 @@ public class GerberViewer extends JFrame {
             }
             filename = fileDialog.getDirectory() + filename;
             Map<String, String> map = new HashMap<>();
-            for (String key : parserMap.keySet()) {
-                GerberFileReader parser = parserMap.get(key);
-                AttributeDictionary fileAttributes = parser.getFileAttributes();
+            for (String key : layerMap.keySet()) {
+                GerberLayer layer = layerMap.get(key);
+                LayerAttributes fileAttributes = layer.getFileAttributes();
                 if (!fileAttributes.get(".FileFunction").getValues().get(0).equals("Component")) {
                     continue;
                 }
                 String side = "\"" + fileAttributes.get(".FileFunction").getValues().get(2) + "\"";
-                for (GraphicalObject go : parser.getGraphicsStream().getStream()) {
-                    AttributeDictionary goAttributes = go.getAttributes();
+                for (LayerObject go : layer.getObjects()) {
+                    LayerAttributes goAttributes = go.getAttributes();
                     if (!goAttributes.get(".AperFunction").getValues().get(0).equals("ComponentMain")) {
                         continue;
                     }
@@ -1945,36 +3064,38 @@ public class GerberViewer extends JFrame {
                 filename = filename + ".csv";
             }
             filename = fileDialog.getDirectory() + filename;
-            List<String> list = new ArrayList<>();
-            for (String key : parserMap.keySet()) {
-                GerberFileReader parser = parserMap.get(key);
+            Set<String> items = new HashSet<>();
+            BitSet visitedSets = new BitSet();
+            for (String key : layerMap.keySet()) {
+                GerberLayer layer = layerMap.get(key);
 
                 //It might be tempting here to skip any file that's not an outer copper layer but 
                 //that would miss embedded components such as etched inductors and capacitors
 
-                goLoop: for (GraphicalObject go : parser.getGraphicsStream().getStream()) {
-                    AttributeDictionary goAttributes = go.getAttributes();
-                    Attribute pinAttribute = goAttributes.get(".P");
+                for (LayerObject go : layer.getObjects()) {
+                    //Objects with the same attributes share an attribute set and give the same
+                    //item so each set only needs to be looked at once
+                    if (visitedSets.get(go.getAttributesId())) {
+                        continue;
+                    }
+                    visitedSets.set(go.getAttributesId());
+                    LayerAttributes goAttributes = go.getAttributes();
+                    LayerAttribute pinAttribute = goAttributes.get(".P");
                     if (pinAttribute == null) {
                         continue;
                     }
-                    Attribute netAttribute = goAttributes.get(".N");
+                    LayerAttribute netAttribute = goAttributes.get(".N");
                     if (netAttribute == null || netAttribute.getValues().size() == 0 ||
                             netAttribute.getValues().get(0).equals("N/C")) {
                         continue;
                     }
-                    String item = netAttribute.getValues().get(0) + "," +
+                    //Skip any duplicates
+                    items.add(netAttribute.getValues().get(0) + "," +
                             pinAttribute.getValues().get(0) + "," +
-                            pinAttribute.getValues().get(1);
-                    for (String check : list) {
-                        if (item.equals(check)) {
-                            //Skip any duplicates
-                            continue goLoop;
-                        }
-                    }
-                    list.add(item);
+                            pinAttribute.getValues().get(1));
                 }
             }
+            List<String> list = new ArrayList<>(items);
             Collections.sort(list);
            
             try (BufferedWriter br = new BufferedWriter(new FileWriter(filename))) {
@@ -2001,8 +3122,17 @@ public class GerberViewer extends JFrame {
 
         @Override
         public void actionPerformed(ActionEvent e) {
-            parserMap.get(parserMap.keySet().toArray()[0]).cancel();
-            backgroundImageRenderer.cancel(true);
+            if (pendingLoad != null) {
+                pendingLoad.cancel(false);
+            }
+            if (parallelParser != null) {
+                parallelParser.cancel();
+            }
+            GerberFileReader reader = activeReader;
+            if (reader != null) {
+                reader.cancel();
+            }
+            renderScheduler.abort();
         }
     };
     private JSplitPane splitPane;
@@ -2022,8 +3152,75 @@ public class GerberViewer extends JFrame {
         progressBar.setValue((int) (100*progress));
     }
     
+    private ParsePreview createParsePreview() {
+        Dimension size = scrollPaneDrawing.getViewport().getExtentSize();
+        return new ParsePreview(size.width, size.height, colorScheme.backgroundColor);
+    }
+    
+    /**
+     * Gets the color a layer is shown with while the board is being parsed
+     * @param function - the function of the layers currently being added to the preview
+     * @param fileFunction - the values of the layer's .FileFunction attribute
+     * @return the color, or null if the layer isn't shown
+     */
+    private Color getPreviewColor(String function, List<String> fileFunction) {
+        if (!fileFunction.get(0).equals(function)) {
+            return null;
+        }
+        switch (function) {
+            case "Profile":
+                return colorScheme.substrateColor;
+            case "Copper":
+                return fileFunction.size() > 2 && fileFunction.get(2).equals("Top") ? colorScheme.copperColor : null;
+            case "Legend":
+                return fileFunction.size() > 1 && fileFunction.get(1).equals("Top") ? colorScheme.legendColor : null;
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * Starts redrawing the objects the parsers have produced so far at a fixed cadence until
+     * parsing finishes
+     * @param preview - the preview to draw the objects into
+     */
+    private void startParsePreview(ParsePreview preview) {
+        stopParsePreview();
+        //Nothing from the previous board should be shown while the new one is being parsed
+        layerSet = null;
+        parsePreview = preview;
+        AtomicBoolean updating = new AtomicBoolean(false);
+        previewTimer = new Timer(PREVIEW_REFRESH_MS, (e) -> {
+            //Skip this refresh if the last one is still drawing
+            if (updating.compareAndSet(false, true)) {
+                previewExecutor.execute(() -> {
+                    try {
+                        if (preview.update(PREVIEW_REFRESH_MS) && parsePreview == preview) {
+                            SwingUtilities.invokeLater(() -> drawingPanel.repaint());
+                        }
+                    }
+                    finally {
+                        updating.set(false);
+                    }
+                });
+            }
+        });
+        previewTimer.start();
+    }
+    
+    private void stopParsePreview() {
+        if (previewTimer != null) {
+            previewTimer.stop();
+            previewTimer = null;
+        }
+        parsePreview = null;
+    }
+    
     private void drawGerberImage() {
+        stopParsePreview();
         gerberImage = null;
+        //The new board may be in different units so its reticle is always redrawn
+        reticleTransform = null;
         zoomFactor = 1.0;
         Dimension newSize = getDefaultDisplayPanelSize();
         drawingPanelColumnHeader.setPreferredSize(new Dimension(newSize.width, HORIZONTAL_SCALE_HEIGHT));
@@ -2034,24 +3231,197 @@ public class GerberViewer extends JFrame {
         drawingPanelColumnHeader.revalidate();
         drawingPanelUnit.revalidate();
         
-        substrateArea = null;
-        solderMaskArea = null;
+        //Identify the set of layers being viewed so that tiles from any previously viewed board
+        //are never reused
+        List<String> keys = new ArrayList<>(layerMap.keySet());
+        Collections.sort(keys);
+        StringBuilder sb = new StringBuilder();
+        for (String key : keys) {
+            sb.append(key + "=" + layerMap.get(key).getGerberFile() + ";");
+        }
+        layerSet = sb.toString();
+        tileCache.clear();
+        stampCache.clear();
+        hitTester = null;
+        watchLayers();
         
         initializeBounds();
     }
     
-    private void cleanUp(Exception ex) {
+    /**
+     * Starts watching the Gerber files of the layers being viewed so that any layer whose file 
+     * is regenerated can be reloaded
+     */
+    private void watchLayers() {
+        stopWatching();
+        Map<File, String> keys = new HashMap<>();
+        for (String key : layerMap.keySet()) {
+            //Files inside an archive aren't watched
+            File file = layerMap.get(key).getGerberFile().getAbsoluteFile();
+            if (file.isFile()) {
+                keys.put(file, key);
+            }
+        }
+        try {
+            fileWatcher = new FileWatcher(keys.keySet(), FILE_SETTLE_MS, 
+                    (file) -> SwingUtilities.invokeLater(() -> reloadLayer(keys.get(file), file)));
+        }
+        catch (IOException ex) {
+            textArea.append("Unable to watch Gerber files for changes: " + ex.getMessage() + "\n");
+        }
+    }
+    
+    private void stopWatching() {
+        if (fileWatcher != null) {
+            fileWatcher.close();
+            fileWatcher = null;
+        }
+    }
+    
+    /**
+     * Parses a layer again after its Gerber file has changed
+     * @param key - the key of the layer
+     * @param file - the layer's Gerber file
+     */
+    private void reloadLayer(String key, File file) {
+        GerberLayer oldLayer = layerMap != null ? layerMap.get(key) : null;
+        if (oldLayer == null) {
+            return;
+        }
+        textArea.append("Reloading " + file.getName() + "...\n");
+        long start = System.currentTimeMillis();
+        //The file may have been changed back to a version that has been viewed before
+        loadExecutor.execute(() -> {
+            try {
+                //The layer replaces one of the board's so it shares the board's pool
+                LayerFile layerFile = openLayerFile(file, oldLayer.getAttributePool());
+                if (layerFile.snapshot != null) {
+                    SwingUtilities.invokeLater(() -> {
+                        textArea.append("Reloading " + file.getName() + " from snapshot completed in " + 
+                                (System.currentTimeMillis() - start) + " ms\n");
+                        replaceLayer(key, oldLayer, layerFile.snapshot);
+                    });
+                    return;
+                }
+                layerFile.reader.parseFileInBackground((p) -> {}, 
+                        () -> {
+                            GerberLayer layer = GerberLayer.from(layerFile.reader, file, 
+                                    layerFile.getCurrentHash(), layerFile.coordinateDecimals, 
+                                    layerFile.attributePool);
+                            ioExecutor.execute(() -> storeLayerSnapshot(layer));
+                            SwingUtilities.invokeLater(() -> {
+                                textArea.append("Reloading " + file.getName() + " completed in " + 
+                                        (System.currentTimeMillis() - start) + " ms\n");
+                                replaceLayer(key, oldLayer, layer);
+                            });
+                        }, 
+                        (ex) -> SwingUtilities.invokeLater(() -> textArea.append("Reloading " + 
+                                file.getName() + " failed: " + ex.getMessage() + "\n")));
+            }
+            catch (Exception ex) {
+                SwingUtilities.invokeLater(() -> textArea.append("Reloading " + 
+                        file.getName() + " failed: " + ex.getMessage() + "\n"));
+            }
+        });
+    }
+    
+    /**
+     * Replaces a layer with a newly parsed version of it. Only the board geometry composed from
+     * the layer is discarded, and only the layers of the cached tiles that depend on it are 
+     * rendered again.
+     * @param key - the key of the layer
+     * @param oldLayer - the layer being replaced, if it has already been replaced or a different
+     * board has since been loaded, nothing is done
+     * @param layer - the new version of the layer
+     */
+    private void replaceLayer(String key, GerberLayer oldLayer, GerberLayer layer) {
+        if (layerMap == null || layerMap.get(key) != oldLayer) {
+            return;
+        }
+        Map<String, GerberLayer> layers = new HashMap<>(layerMap);
+        layers.put(key, layer);
+        String[] plotOrder = getPlotOrder(layers);
+        List<String> fileFunction = layer.getFileAttributes().get(".FileFunction") != null ? 
+                layer.getFileAttributes().get(".FileFunction").getValues() : Collections.singletonList("Anything");
+        String function = plotOrder.length == 1 ? "Anything" : fileFunction.get(0);
+        
+        //Carry over everything that doesn't depend on the layer to a new board geometry so that
+        //a render still in flight can't store geometry composed from the old layer into it. The
+        //old board isn't locked since a composition holds it for as long as it runs. Each piece
+        //of geometry is only published once it is complete so whatever has been published is
+        //copied, and anything still being composed is abandoned once the old board is replaced
+        //and then composed again for the new one.
+        BoardGeometry oldBoard = boardGeometry;
+        BoardGeometry board = new BoardGeometry();
+        board.substrateArea = oldBoard.substrateArea;
+        board.solderMaskAreas.putAll(oldBoard.solderMaskAreas);
+        board.solderMaskOpenings.putAll(oldBoard.solderMaskOpenings);
+        board.silkAreas.putAll(oldBoard.silkAreas);
+        board.spatialIndices.putAll(oldBoard.spatialIndices);
+        board.spatialIndices.remove(oldLayer);
+        
+        //The layers, in plot order, that need to be rendered again and the side of the board 
+        //they are on, or null if they are on both sides
+        BitSet staleLayers = new BitSet();
+        String staleSide = null;
+        switch (function) {
+            case "Profile":
+                //The solder masks are cut from the substrate
+                board.substrateArea = null;
+                board.solderMaskAreas.clear();
+                board.solderMaskOpenings.clear();
+                staleLayers.set(Arrays.asList(plotOrder).indexOf("Profile"));
+                staleLayers.set(Arrays.asList(plotOrder).indexOf("Soldermask"));
+                break;
+            case "Soldermask":
+                //The silkscreen is clipped by the solder mask openings
+                staleSide = fileFunction.get(1);
+                board.solderMaskAreas.remove(staleSide);
+                board.solderMaskOpenings.remove(staleSide);
+                board.silkAreas.remove(staleSide);
+                staleLayers.set(Arrays.asList(plotOrder).indexOf("Soldermask"));
+                staleLayers.set(Arrays.asList(plotOrder).indexOf("Legend"));
+                break;
+            case "Legend":
+                staleSide = fileFunction.get(1);
+                board.silkAreas.remove(staleSide);
+                staleLayers.set(Arrays.asList(plotOrder).indexOf("Legend"));
+                break;
+            case "Copper":
+                staleSide = fileFunction.size() > 2 ? fileFunction.get(2) : null;
+                staleLayers.set(Arrays.asList(plotOrder).indexOf("Copper"));
+                break;
+            default:
+                //Layers that aren't displayed, such as component layers, don't need rendering
+                int layerIdx = Arrays.asList(plotOrder).indexOf(function);
+                if (layerIdx >= 0) {
+                    staleLayers.set(layerIdx);
+                }
+                break;
+        }
+        
+        layerMap = layers;
+        boardGeometry = board;
+        stampCache.remove(oldLayer.getGeometry());
+        if (!staleLayers.isEmpty()) {
+            tileCache.markStale(layerSet, staleSide, staleLayers);
+        }
+        renderGerberImage();
+    }
+    
+    private void cleanUp(Throwable ex) {
         if (ex != null) {
             displayStackTrace(ex);
             JOptionPane.showMessageDialog(this, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
         }
+        stopParsePreview();
         mnFile.setEnabled(true);
         mnOptions.setEnabled(true);
         btnAbort.setEnabled(false);
         progressBar.setValue(0);
     }
     
-    private void displayStackTrace(Exception ex) {
+    private void displayStackTrace(Throwable ex) {
         textArea.append("\n");
         boolean starting = true;
         for (StackTraceElement ste : ex.getStackTrace()) {
@@ -0,0 +1,66 @@
+package gerberViewer;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import gerberFileReader.Polarity;
+
+/**
+ * Finds the objects of the layers in view that are visible at a point so that they can be
+ * identified by mouse clicks. Nothing is computed until a point is actually tested: the objects
+ * whose bounds contain the point are found with the layer's spatial index and are then examined
+ * from the last drawn to the first so that any clear object covering the point hides the objects
+ * drawn before it. No areas are ever subtracted from one another.
+ */
+class HitTester {
+    private final List<GerberLayer> layers;
+    private final List<SpatialIndex<LayerObject>> indices;
+    private final double minSize;
+
+    /**
+     * @param layers - the layers in view in plot order
+     * @param indices - the spatial index of each layer
+     * @param minSize - objects whose width and height are both no more than this are too small
+     * to be seen so are never found
+     */
+    HitTester(List<GerberLayer> layers, List<SpatialIndex<LayerObject>> indices, double minSize) {
+        this.layers = layers;
+        this.indices = indices;
+        this.minSize = minSize;
+    }
+
+    /**
+     * Finds the objects visible at a point
+     * @param point - the point in object coordinates
+     * @return the objects in plot order and, within each layer, in drawing order
+     */
+    List<LayerObject> objectsAt(Point2D point) {
+        List<LayerObject> found = new ArrayList<>();
+        Rectangle2D region = new Rectangle2D.Double(point.getX(), point.getY(), 0, 0);
+        for (int i=0; i<layers.size(); i++) {
+            SpatialIndex<LayerObject> index = indices.get(i);
+            int[] ids = index.query(region);
+            List<LayerObject> layerFound = new ArrayList<>();
+            for (int j=ids.length-1; j>=0; j--) {
+                Rectangle2D bounds = index.getBounds(ids[j]);
+                if (bounds.getWidth() <= minSize && bounds.getHeight() <= minSize) {
+                    continue;
+                }
+                LayerObject go = index.get(ids[j]);
+                if (!go.getShape().contains(point)) {
+                    continue;
+                }
+                if (go.getPolarity() != Polarity.DARK) {
+                    //Everything drawn before this has been erased here
+                    break;
+                }
+                layerFound.add(go);
+            }
+            Collections.reverse(layerFound);
+            found.addAll(layerFound);
+        }
+        return found;
+    }
+}
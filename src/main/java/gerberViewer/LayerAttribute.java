@@ -0,0 +1,38 @@
+package gerberViewer;
+
+import java.util.List;
+
+/**
+ * A single attribute of a Gerber file or of one of its graphical objects. Attributes are interned
+ * by the board's AttributePool so their names and values are shared by all of its layers.
+ */
+class LayerAttribute {
+    private final String name;
+    private final List<String> values;
+    private final String text;
+
+    /**
+     * Only the AttributePool creates attributes
+     * @param name - the name of the attribute, for example ".FileFunction"
+     * @param values - the attribute's values
+     * @param text - how the attribute is displayed
+     */
+    LayerAttribute(String name, List<String> values, String text) {
+        this.name = name;
+        this.values = values;
+        this.text = text;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    List<String> getValues() {
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,79 @@
+package gerberViewer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import gerberFileReader.Attribute;
+import gerberFileReader.AttributeDictionary;
+
+/**
+ * The attributes of a Gerber file or of one of its graphical objects, keyed by name. Attribute
+ * sets are interned by the board's AttributePool so two sets of the same board with the same
+ * attributes are always the same object and have the same id.
+ */
+class LayerAttributes {
+    //Every pool has this as its empty set
+    static final LayerAttributes EMPTY = new LayerAttributes(0, Collections.emptyList());
+
+    private final int id;
+    private final List<LayerAttribute> attributes;
+
+    /**
+     * Only the AttributePool creates attribute sets
+     * @param id - the set's id in the pool
+     * @param attributes - the attributes in the order they were defined
+     */
+    LayerAttributes(int id, List<LayerAttribute> attributes) {
+        this.id = id;
+        this.attributes = attributes;
+    }
+
+    /**
+     * Copies the attributes from a GerberFileReader attribute dictionary into a pool
+     * @param dictionary - the dictionary, may be null
+     * @param pool - the pool of the board the attributes belong to
+     * @return the attributes
+     */
+    static LayerAttributes from(AttributeDictionary dictionary, AttributePool pool) {
+        if (dictionary == null || dictionary.keySet().isEmpty()) {
+            return EMPTY;
+        }
+        List<LayerAttribute> setAttributes = new ArrayList<>();
+        for (String name : dictionary.keySet()) {
+            Attribute attribute = dictionary.get(name);
+            setAttributes.add(pool.getAttribute(name, attribute.getValues(), attribute.toString()));
+        }
+        return pool.getAttributeSet(setAttributes);
+    }
+
+    /**
+     * @return the set's id in its AttributePool
+     */
+    int getId() {
+        return id;
+    }
+
+    /**
+     * @param name - the name of the attribute
+     * @return the attribute, or null if there is no attribute with that name
+     */
+    LayerAttribute get(String name) {
+        //Sets only have a handful of attributes so a search is quicker than a map
+        for (LayerAttribute attribute : attributes) {
+            if (attribute.getName().equals(name)) {
+                return attribute;
+            }
+        }
+        return null;
+    }
+
+    Set<String> keySet() {
+        Set<String> names = new LinkedHashSet<>();
+        for (LayerAttribute attribute : attributes) {
+            names.add(attribute.getName());
+        }
+        return Collections.unmodifiableSet(names);
+    }
+}
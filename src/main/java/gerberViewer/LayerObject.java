@@ -0,0 +1,134 @@
+package gerberViewer;
+
+import java.awt.Shape;
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import gerberFileReader.Polarity;
+
+/**
+ * A single graphical object of a Gerber layer along with its attributes and meta data. The
+ * object's geometry is kept in its layer's GeometryStore and its attributes are interned by the
+ * board's AttributePool.
+ */
+class LayerObject {
+    private final GeometryStore geometry;
+    private final int index;
+    private final Polarity polarity;
+    private final LayerAttributes attributes;
+    private final String repeatId;
+    private final String blockId;
+    private final Path2D strokePath;
+    private final double strokeWidth;
+
+    /**
+     * @param geometry - the store holding the object's geometry
+     * @param index - the index of the object's geometry in the store
+     * @param polarity - the object's polarity
+     * @param attributes - the object's attributes
+     * @param repeatId - the id of the step and repeat the object was created by, empty if none
+     * @param blockId - the id of the aperture block the object was created by, empty if none
+     * @param strokePath - the center-line of the object if it was created by a draw or arc,
+     * otherwise null
+     * @param strokeWidth - the width of the round aperture the object was drawn with along its
+     * center-line, or 0 if it wasn't drawn with a round aperture
+     */
+    LayerObject(GeometryStore geometry, int index, Polarity polarity, LayerAttributes attributes, String repeatId,
+            String blockId, Path2D strokePath, double strokeWidth) {
+        this.geometry = geometry;
+        this.index = index;
+        this.polarity = polarity;
+        this.attributes = attributes;
+        this.repeatId = repeatId;
+        this.blockId = blockId;
+        this.strokePath = strokePath;
+        this.strokeWidth = strokeWidth;
+    }
+
+    /**
+     * Creates an Area of the object. This is expensive so getShape should be used instead when
+     * the object only needs to be filled.
+     * @return a new Area of the object that the caller is free to modify
+     */
+    Area getArea() {
+        return geometry.getArea(index);
+    }
+
+    /**
+     * @return the outline of the object, filling it covers exactly the same area as the object
+     */
+    Shape getShape() {
+        return geometry.getPath(index);
+    }
+
+    /**
+     * @param maxError - the furthest, in object units, the outline may stray from the object
+     * @return the outline of the object simplified as much as the error allows, this must not
+     * be modified
+     */
+    Shape getShape(double maxError) {
+        return geometry.getPath(index, maxError);
+    }
+
+    /**
+     * @return the bounds of the object's outline, this may be slightly larger than the bounds
+     * of its Area if the outline has curves
+     */
+    Rectangle2D getBounds() {
+        return geometry.getBounds(index);
+    }
+
+    /**
+     * @return the store holding the object's geometry
+     */
+    GeometryStore getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * @return the index of the object's geometry in its store
+     */
+    int getIndex() {
+        return index;
+    }
+
+    Polarity getPolarity() {
+        return polarity;
+    }
+
+    /**
+     * @return the object's attributes, objects with the same attributes share the same set
+     */
+    LayerAttributes getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * @return the id of the object's attribute set, objects of the same board with the same
+     * attributes have the same id
+     */
+    int getAttributesId() {
+        return attributes.getId();
+    }
+
+    String getRepeatId() {
+        return repeatId;
+    }
+
+    String getBlockId() {
+        return blockId;
+    }
+
+    Path2D getStrokePath() {
+        return strokePath;
+    }
+
+    /**
+     * @return the width of the round aperture the object was drawn with, stroking the object's
+     * center-line with this width and round caps and joins covers exactly the same area as the
+     * object, or 0 if the object wasn't drawn with a round aperture
+     */
+    double getStrokeWidth() {
+        return strokeWidth;
+    }
+}
@@ -0,0 +1,280 @@
+package gerberViewer;
+
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import gerberFileReader.Polarity;
+import gerberFileReader.Units;
+
+/**
+ * Stores parsed Gerber layers as binary snapshots so that files that have been viewed before can
+ * be restored without parsing their text again. Snapshots are named by the SHA-256 hash of the
+ * contents of the Gerber file they were parsed from so a snapshot can never be used for a file
+ * that has changed. Snapshots are read through a memory mapped buffer.
+ * <p>
+ * A snapshot holds a table of every distinct string and a table of every distinct set of
+ * attributes in the layer so that objects only refer to them by index. The geometry of the
+ * objects is stored as the arrays of the layer's GeometryStore and the center-lines of strokes
+ * in the format of PathCodec.
+ */
+class LayerSnapshot {
+    private static final int MAGIC = 0x47564C53; //"GVLS"
+    private static final int VERSION = 3;
+    private static final String SUFFIX = ".gvs";
+
+    private final File directory;
+    private final long maxBytes;
+
+    /**
+     * @param directory - the directory to keep the snapshots in, it is created if necessary
+     * @param maxBytes - the maximum total size of the snapshots, the least recently used are
+     * deleted to keep within this size
+     */
+    LayerSnapshot(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Restores a layer from its snapshot
+     * @param gerberFile - the Gerber file the layer is for
+     * @param hash - the SHA-256 hash of the contents of the Gerber file
+     * @param pool - the pool of the board the layer belongs to
+     * @return the layer, or null if there is no snapshot of the file
+     */
+    GerberLayer load(File gerberFile, String hash, AttributePool pool) {
+        File snapshot = new File(directory, hash + SUFFIX);
+        if (!snapshot.isFile()) {
+            return null;
+        }
+        GerberLayer layer = null;
+        try (FileChannel channel = FileChannel.open(snapshot.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            layer = read(in, gerberFile, hash, pool);
+        }
+        catch (IOException | BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException |
+                NegativeArraySizeException ex) {
+            //The snapshot is corrupt
+            layer = null;
+        }
+        if (layer == null) {
+            snapshot.delete();
+            return null;
+        }
+        //Mark the snapshot as recently used
+        snapshot.setLastModified(System.currentTimeMillis());
+        return layer;
+    }
+
+    /**
+     * Writes a snapshot of a layer
+     * @param layer - the layer
+     * @param hash - the SHA-256 hash of the contents of the layer's Gerber file
+     * @throws IOException if the snapshot can't be written
+     */
+    void store(GerberLayer layer, String hash) throws IOException {
+        directory.mkdirs();
+        File snapshot = new File(directory, hash + SUFFIX);
+        //Write to a temporary file first so that a partially written snapshot is never seen
+        File temp = File.createTempFile("snapshot", ".tmp", directory);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+                write(out, layer, hash);
+            }
+            Files.move(temp.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            temp.delete();
+        }
+        trim();
+    }
+
+    private static void write(DataOutputStream out, GerberLayer layer, String hash) throws IOException {
+        //Build the string and attribute set tables
+        Map<String, Integer> strings = new HashMap<>();
+        List<String> stringTable = new ArrayList<>();
+        Map<LayerAttributes, Integer> attributeSets = new IdentityHashMap<>();
+        List<LayerAttributes> attributeSetTable = new ArrayList<>();
+        addAttributeSet(layer.getFileAttributes(), attributeSets, attributeSetTable, strings, stringTable);
+        addString(layer.getUnits().name(), strings, stringTable);
+        for (LayerObject object : layer.getObjects()) {
+            addAttributeSet(object.getAttributes(), attributeSets, attributeSetTable, strings, stringTable);
+            addString(object.getPolarity().name(), strings, stringTable);
+            addString(object.getRepeatId(), strings, stringTable);
+            addString(object.getBlockId(), strings, stringTable);
+        }
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeString(out, hash);
+        out.writeInt(stringTable.size());
+        for (String string : stringTable) {
+            writeString(out, string);
+        }
+        out.writeInt(attributeSetTable.size());
+        for (LayerAttributes attributes : attributeSetTable) {
+            out.writeInt(attributes.keySet().size());
+            for (String name : attributes.keySet()) {
+                LayerAttribute attribute = attributes.get(name);
+                out.writeInt(strings.get(attribute.getName()));
+                out.writeInt(strings.get(attribute.toString()));
+                out.writeInt(attribute.getValues().size());
+                for (String value : attribute.getValues()) {
+                    out.writeInt(strings.get(value));
+                }
+            }
+        }
+        out.writeInt(strings.get(layer.getUnits().name()));
+        out.writeInt(attributeSets.get(layer.getFileAttributes()));
+        Rectangle2D bounds = layer.getBounds();
+        out.writeBoolean(bounds != null);
+        if (bounds != null) {
+            out.writeDouble(bounds.getX());
+            out.writeDouble(bounds.getY());
+            out.writeDouble(bounds.getWidth());
+            out.writeDouble(bounds.getHeight());
+        }
+        layer.getGeometry().write(out);
+        out.writeInt(layer.getObjects().size());
+        for (LayerObject object : layer.getObjects()) {
+            out.writeInt(strings.get(object.getPolarity().name()));
+            out.writeInt(attributeSets.get(object.getAttributes()));
+            out.writeInt(strings.get(object.getRepeatId()));
+            out.writeInt(strings.get(object.getBlockId()));
+            out.writeBoolean(object.getStrokePath() != null);
+            if (object.getStrokePath() != null) {
+                PathCodec.write(out, object.getStrokePath());
+                out.writeDouble(object.getStrokeWidth());
+            }
+        }
+    }
+
+    private static void addAttributeSet(LayerAttributes attributes, Map<LayerAttributes, Integer> attributeSets,
+            List<LayerAttributes> attributeSetTable, Map<String, Integer> strings, List<String> stringTable) {
+        if (attributeSets.containsKey(attributes)) {
+            return;
+        }
+        attributeSets.put(attributes, attributeSetTable.size());
+        attributeSetTable.add(attributes);
+        for (String name : attributes.keySet()) {
+            LayerAttribute attribute = attributes.get(name);
+            addString(attribute.getName(), strings, stringTable);
+            addString(attribute.toString(), strings, stringTable);
+            for (String value : attribute.getValues()) {
+                addString(value, strings, stringTable);
+            }
+        }
+    }
+
+    private static void addString(String string, Map<String, Integer> strings, List<String> stringTable) {
+        if (!strings.containsKey(string)) {
+            strings.put(string, stringTable.size());
+            stringTable.add(string);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static GerberLayer read(ByteBuffer in, File gerberFile, String hash, AttributePool pool) 
+            throws IOException {
+        if (in.getInt() != MAGIC || in.getInt() != VERSION || !readString(in).equals(hash)) {
+            return null;
+        }
+        String[] stringTable = new String[in.getInt()];
+        for (int i=0; i<stringTable.length; i++) {
+            stringTable[i] = readString(in);
+        }
+        LayerAttributes[] attributeSetTable = new LayerAttributes[in.getInt()];
+        for (int i=0; i<attributeSetTable.length; i++) {
+            int attributeCount = in.getInt();
+            List<LayerAttribute> attributes = new ArrayList<>();
+            for (int j=0; j<attributeCount; j++) {
+                String name = stringTable[in.getInt()];
+                String text = stringTable[in.getInt()];
+                String[] values = new String[in.getInt()];
+                for (int k=0; k<values.length; k++) {
+                    values[k] = stringTable[in.getInt()];
+                }
+                attributes.add(pool.getAttribute(name, Arrays.asList(values), text));
+            }
+            attributeSetTable[i] = pool.getAttributeSet(attributes);
+        }
+        Units units = Units.valueOf(stringTable[in.getInt()]);
+        LayerAttributes fileAttributes = attributeSetTable[in.getInt()];
+        Rectangle2D bounds = null;
+        if (in.get() != 0) {
+            bounds = new Rectangle2D.Double(in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble());
+        }
+        GeometryStore geometry = GeometryStore.read(in);
+        int objectCount = in.getInt();
+        if (objectCount != geometry.size()) {
+            return null;
+        }
+        List<LayerObject> objects = new ArrayList<>(objectCount);
+        for (int i=0; i<objectCount; i++) {
+            Polarity polarity = Polarity.valueOf(stringTable[in.getInt()]);
+            LayerAttributes attributes = attributeSetTable[in.getInt()];
+            String repeatId = stringTable[in.getInt()];
+            String blockId = stringTable[in.getInt()];
+            Path2D strokePath = null;
+            double strokeWidth = 0;
+            if (in.get() != 0) {
+                strokePath = PathCodec.read(in);
+                strokeWidth = in.getDouble();
+            }
+            objects.add(new LayerObject(geometry, i, polarity, attributes, repeatId, blockId, strokePath, strokeWidth));
+        }
+        return new GerberLayer(gerberFile, hash, units, pool, fileAttributes, geometry, objects, bounds);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Deletes the least recently used snapshots until the snapshots are within their size limit
+     */
+    private void trim() {
+        File[] snapshots = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (snapshots == null) {
+            return;
+        }
+        long total = 0;
+        for (File snapshot : snapshots) {
+            total += snapshot.length();
+        }
+        Arrays.sort(snapshots, Comparator.comparingLong(File::lastModified));
+        for (int i=0; i<snapshots.length && total > maxBytes; i++) {
+            long length = snapshots[i].length();
+            if (snapshots[i].delete()) {
+                total -= length;
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package gerberViewer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import gerberFileReader.GerberFileReader;
+
+/**
+ * Parses a set of Gerber files in parallel without ever parsing more than a given number of files
+ * at once. Each parser runs on its own background thread and the next file is started from the
+ * completion callback of the one before it, so no thread is ever tied up just waiting for a
+ * parser to finish. Overall progress is reported with each file weighted by its size so that a
+ * few large copper layers don't leave the progress bar stuck near the end.
+ */
+class ParallelParser {
+    private final int maxParallel;
+    private final List<String> keys = new ArrayList<>();
+    private final List<GerberFileReader> parsers = new ArrayList<>();
+    private final boolean[] finished;
+    private final long[] sizes;
+    private final double[] progress;
+    private final long totalSize;
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    private Consumer<Double> showProgress;
+    private Consumer<GerberFileReader> fileProgressed;
+    private Consumer<String> fileParsed;
+    private int started = 0;
+    private int finishedCount = 0;
+    private volatile boolean cancelled = false;
+
+    /**
+     * @param maxParallel - the most files to parse at once
+     * @param parserMap - the parsers of the files to parse
+     */
+    ParallelParser(int maxParallel, Map<String, GerberFileReader> parserMap) {
+        this.maxParallel = Math.max(1, maxParallel);
+        for (String key : parserMap.keySet()) {
+            keys.add(key);
+            parsers.add(parserMap.get(key));
+        }
+        finished = new boolean[parsers.size()];
+        sizes = new long[parsers.size()];
+        progress = new double[parsers.size()];
+        long total = 0;
+        for (int i=0; i<parsers.size(); i++) {
+            //Never let a file count for nothing, even if it is empty
+            sizes[i] = Math.max(1, parsers.get(i).getGerberFile().length());
+            total += sizes[i];
+        }
+        totalSize = total;
+    }
+
+    /**
+     * Starts parsing the files
+     * @param showProgress - receives the fraction of the total bytes parsed so far, may be null
+     * @param fileProgressed - receives a file's parser each time it reports progress, this is
+     * called on the parser's thread, may be null
+     * @param fileParsed - receives the key of each file as soon as it has been parsed, this is
+     * called on the parser's thread before the next file is started, may be null
+     * @return a future that completes when all the files have been parsed, or completes
+     * exceptionally as soon as any file fails to parse or parsing is cancelled
+     */
+    CompletableFuture<Void> start(Consumer<Double> showProgress, Consumer<GerberFileReader> fileProgressed,
+            Consumer<String> fileParsed) {
+        this.showProgress = showProgress;
+        this.fileProgressed = fileProgressed;
+        this.fileParsed = fileParsed;
+        if (parsers.isEmpty()) {
+            done.complete(null);
+        }
+        for (int i=0; i<maxParallel; i++) {
+            startNext();
+        }
+        return done;
+    }
+
+    private void startNext() {
+        int idx;
+        synchronized (this) {
+            if (cancelled || started >= parsers.size()) {
+                return;
+            }
+            idx = started++;
+        }
+        try {
+            parsers.get(idx).parseFileInBackground(
+                    (p) -> {
+                        if (fileProgressed != null) {
+                            fileProgressed.accept(parsers.get(idx));
+                        }
+                        updateProgress(idx, p);
+                    },
+                    () -> fileDone(idx),
+                    (ex) -> fail(ex));
+        }
+        catch (RuntimeException ex) {
+            fail(ex);
+        }
+    }
+
+    private void fileDone(int idx) {
+        if (cancelled) {
+            return;
+        }
+        updateProgress(idx, 1.0);
+        try {
+            if (fileParsed != null) {
+                fileParsed.accept(keys.get(idx));
+            }
+        }
+        catch (RuntimeException ex) {
+            fail(ex);
+            return;
+        }
+        boolean last;
+        synchronized (this) {
+            finished[idx] = true;
+            last = ++finishedCount == parsers.size();
+        }
+        if (last) {
+            done.complete(null);
+        }
+        else {
+            startNext();
+        }
+    }
+
+    private void fail(Exception ex) {
+        //Don't wait for the rest of the files if one of them fails
+        if (done.completeExceptionally(ex)) {
+            cancel();
+        }
+    }
+
+    /**
+     * Cancels parsing of any files that haven't finished
+     */
+    void cancel() {
+        List<GerberFileReader> running = new ArrayList<>();
+        synchronized (this) {
+            cancelled = true;
+            for (int i=0; i<started; i++) {
+                if (!finished[i]) {
+                    running.add(parsers.get(i));
+                }
+            }
+        }
+        for (GerberFileReader parser : running) {
+            parser.cancel();
+        }
+        //In case a parser doesn't report back after being cancelled
+        done.completeExceptionally(new CancellationException());
+    }
+
+    /**
+     * @return true if parsing has been cancelled
+     */
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    private void updateProgress(int idx, double fileProgress) {
+        double fraction;
+        synchronized (progress) {
+            progress[idx] = fileProgress;
+            double parsedBytes = 0;
+            for (int i=0; i<progress.length; i++) {
+                parsedBytes += progress[i]*sizes[i];
+            }
+            fraction = parsedBytes/totalSize;
+        }
+        if (showProgress != null) {
+            showProgress.accept(fraction);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package gerberViewer;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import gerberFileReader.GerberFileReader;
+import gerberFileReader.GraphicsStream;
+import gerberFileReader.GraphicalObject;
+import gerberFileReader.Polarity;
+
+/**
+ * A rough image of the layers of a board that are still being parsed. Each time it is updated,
+ * the objects the parsers have produced since the last update are drawn into the image so the
+ * board can be seen filling in while it is parsed. The image is scaled to fit everything drawn
+ * so far and is redrawn at a smaller scale whenever an object falls outside of it, which, since
+ * the image then grows by half again in each direction, only happens a few times per board.
+ * <p>
+ * A reader's graphics stream is only ever read on the reader's own thread, from its progress
+ * and completion callbacks, and the objects found there are handed to the updating thread
+ * through a concurrent queue. Updates must all be made from the same thread but the image may be
+ * painted from any thread.
+ */
+class ParsePreview {
+    private final int width;
+    private final int height;
+    private final Color backgroundColor;
+    private final List<Source> sources = new ArrayList<>();
+    private final Map<GerberFileReader, Source> readerSources = new IdentityHashMap<>();
+    private final List<Item> drawn = new ArrayList<>();
+    private Rectangle2D drawnBounds;
+    private Rectangle2D imageBounds;
+    private AffineTransform transform;
+    private volatile BufferedImage image;
+
+    /**
+     * A layer being parsed, or one that is already complete
+     */
+    private static class Source {
+        //Objects collected from the reader on its own thread that haven't been drawn yet
+        final Queue<GraphicalObject> parsed = new ConcurrentLinkedQueue<>();
+        //The number of objects collected from the reader, only used on the reader's thread
+        int collected;
+        List<LayerObject> objects;
+        Color color;
+        boolean eraseClear;
+        int consumed;
+    }
+
+    /**
+     * An object that has been drawn
+     */
+    private static class Item {
+        final Shape shape;
+        final Color color;
+
+        Item(Shape shape, Color color) {
+            this.shape = shape;
+            this.color = color;
+        }
+    }
+
+    /**
+     * @param width - the width of the image in pixels
+     * @param height - the height of the image in pixels
+     * @param backgroundColor - the color of the image where nothing has been drawn
+     */
+    ParsePreview(int width, int height, Color backgroundColor) {
+        this.width = Math.max(1, width);
+        this.height = Math.max(1, height);
+        this.backgroundColor = backgroundColor;
+        image = createImage();
+    }
+
+    /**
+     * Adds a layer whose file is about to be parsed. Its objects only appear once they have been
+     * collected by {@link #readerProgressed(GerberFileReader)} or
+     * {@link #readerFinished(GerberFileReader)}.
+     * @param reader - the layer's reader
+     * @param color - the color to draw the layer's dark objects with
+     * @param eraseClear - if true, the layer's clear objects are drawn with the background color,
+     * otherwise they aren't drawn at all
+     */
+    synchronized void addReader(GerberFileReader reader, Color color, boolean eraseClear) {
+        Source source = new Source();
+        source.color = color;
+        source.eraseClear = eraseClear;
+        sources.add(source);
+        readerSources.put(reader, source);
+    }
+
+    /**
+     * Collects the objects a reader has produced since it last reported progress. The most recent
+     * object is held back since the reader may still be building it. This must be called on the
+     * reader's own thread, such as from its progress callback.
+     * @param reader - the reader
+     */
+    void readerProgressed(GerberFileReader reader) {
+        collect(reader, false);
+    }
+
+    /**
+     * Collects the rest of the objects of a reader that has finished parsing. This must be called
+     * from the reader's completion callback.
+     * @param reader - the reader
+     */
+    void readerFinished(GerberFileReader reader) {
+        collect(reader, true);
+    }
+
+    private void collect(GerberFileReader reader, boolean finished) {
+        Source source;
+        synchronized (this) {
+            source = readerSources.get(reader);
+        }
+        if (source == null) {
+            return;
+        }
+        GraphicsStream graphicsStream = reader.getGraphicsStream();
+        if (graphicsStream == null || graphicsStream.getStream() == null) {
+            return;
+        }
+        List<GraphicalObject> stream = graphicsStream.getStream();
+        int available = finished ? stream.size() : stream.size() - 1;
+        while (source.collected < available) {
+            GraphicalObject go = stream.get(source.collected++);
+            if (go != null && go.getArea() != null) {
+                source.parsed.add(go);
+            }
+        }
+    }
+
+    /**
+     * Adds a layer that is already complete, such as one restored from a snapshot
+     * @param layer - the layer
+     * @param color - the color to draw the layer's dark objects with
+     * @param eraseClear - if true, the layer's clear objects are drawn with the background color,
+     * otherwise they aren't drawn at all
+     */
+    synchronized void addLayer(GerberLayer layer, Color color, boolean eraseClear) {
+        Source source = new Source();
+        source.objects = layer.getObjects();
+        source.color = color;
+        source.eraseClear = eraseClear;
+        sources.add(source);
+    }
+
+    /**
+     * Draws the objects produced since the last update
+     * @param maxMillis - the time after which to stop drawing, any objects left over are drawn by
+     * the next update
+     * @return true if anything was drawn
+     */
+    boolean update(long maxMillis) {
+        long deadline = System.currentTimeMillis() + maxMillis;
+        List<Source> currentSources;
+        synchronized (this) {
+            currentSources = new ArrayList<>(sources);
+        }
+        List<Item> newItems = new ArrayList<>();
+        for (Source source : currentSources) {
+            while (System.currentTimeMillis() < deadline) {
+                Shape shape;
+                Polarity polarity;
+                if (source.objects != null) {
+                    if (source.consumed >= source.objects.size()) {
+                        break;
+                    }
+                    LayerObject object = source.objects.get(source.consumed);
+                    shape = object.getShape();
+                    polarity = object.getPolarity();
+                }
+                else {
+                    GraphicalObject go = source.parsed.poll();
+                    if (go == null) {
+                        break;
+                    }
+                    shape = go.getArea();
+                    polarity = go.getPolarity();
+                }
+                source.consumed++;
+                if (polarity == Polarity.DARK) {
+                    newItems.add(new Item(shape, source.color));
+                }
+                else if (source.eraseClear) {
+                    newItems.add(new Item(shape, backgroundColor));
+                }
+            }
+        }
+        if (newItems.isEmpty()) {
+            return false;
+        }
+
+        for (Item item : newItems) {
+            if (drawnBounds == null) {
+                drawnBounds = item.shape.getBounds2D();
+            }
+            else {
+                drawnBounds.add(item.shape.getBounds2D());
+            }
+        }
+        drawn.addAll(newItems);
+        if (imageBounds == null || !imageBounds.contains(drawnBounds)) {
+            //Leave room to grow so that this doesn't happen with nearly every update
+            imageBounds = new Rectangle2D.Double(
+                    drawnBounds.getX() - drawnBounds.getWidth()/4, drawnBounds.getY() - drawnBounds.getHeight()/4,
+                    1.5*drawnBounds.getWidth(), 1.5*drawnBounds.getHeight());
+            double scale = Math.min(width/Math.max(imageBounds.getWidth(), Double.MIN_NORMAL),
+                    height/Math.max(imageBounds.getHeight(), Double.MIN_NORMAL));
+            transform = new AffineTransform();
+            transform.translate(width/2.0, height/2.0);
+            transform.scale(scale, -scale);
+            transform.translate(-imageBounds.getCenterX(), -imageBounds.getCenterY());
+            BufferedImage newImage = createImage();
+            draw(newImage, drawn);
+            image = newImage;
+        }
+        else {
+            draw(image, newItems);
+        }
+        return true;
+    }
+
+    private void draw(BufferedImage target, List<Item> items) {
+        Graphics2D g2 = target.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        for (Item item : items) {
+            g2.setColor(item.color);
+            g2.fill(transform.createTransformedShape(item.shape));
+        }
+        g2.dispose();
+    }
+
+    private BufferedImage createImage() {
+        BufferedImage newImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = newImage.createGraphics();
+        g2.setColor(backgroundColor);
+        g2.fillRect(0, 0, width, height);
+        g2.dispose();
+        return newImage;
+    }
+
+    /**
+     * @return the image drawn so far
+     */
+    BufferedImage getImage() {
+        return image;
+    }
+}
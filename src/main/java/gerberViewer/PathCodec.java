@@ -0,0 +1,122 @@
+package gerberViewer;
+
+import java.awt.Shape;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads and writes shapes in a compact binary format: the winding rule and the number of
+ * segments followed by each segment's type and only as many coordinates as that type of segment
+ * has.
+ */
+final class PathCodec {
+
+    private PathCodec() {
+    }
+
+    /**
+     * Writes a shape
+     * @param out - where to write the shape
+     * @param shape - the shape
+     * @throws IOException if the shape can't be written
+     */
+    static void write(DataOutput out, Shape shape) throws IOException {
+        int segCount = 0;
+        for (PathIterator pathIter = shape.getPathIterator(null); !pathIter.isDone(); pathIter.next()) {
+            segCount++;
+        }
+        PathIterator pathIter = shape.getPathIterator(null);
+        out.writeByte(pathIter.getWindingRule());
+        out.writeInt(segCount);
+        double[] coords = new double[6];
+        while (!pathIter.isDone()) {
+            int segType = pathIter.currentSegment(coords);
+            out.writeByte(segType);
+            for (int j=0; j<coordCount(segType); j++) {
+                out.writeDouble(coords[j]);
+            }
+            pathIter.next();
+        }
+    }
+
+    /**
+     * Reads a shape written by {@link #write(DataOutput, Shape)}
+     * @param in - where to read the shape from
+     * @return the shape's path
+     * @throws IOException if the shape can't be read
+     */
+    static Path2D read(DataInput in) throws IOException {
+        Path2D path = new Path2D.Double(in.readByte());
+        int segCount = in.readInt();
+        double[] c = new double[6];
+        for (int i=0; i<segCount; i++) {
+            int segType = in.readByte();
+            for (int j=0; j<coordCount(segType); j++) {
+                c[j] = in.readDouble();
+            }
+            appendSegment(path, segType, c);
+        }
+        return path;
+    }
+
+    /**
+     * Reads a shape written by {@link #write(DataOutput, Shape)}
+     * @param in - the buffer to read the shape from, it must be big-endian
+     * @return the shape's path
+     * @throws IOException if the shape can't be read
+     */
+    static Path2D read(ByteBuffer in) throws IOException {
+        int windingRule = in.get();
+        int segCount = in.getInt();
+        Path2D path = new Path2D.Double(windingRule, segCount);
+        double[] c = new double[6];
+        for (int i=0; i<segCount; i++) {
+            int segType = in.get();
+            for (int j=0; j<coordCount(segType); j++) {
+                c[j] = in.getDouble();
+            }
+            appendSegment(path, segType, c);
+        }
+        return path;
+    }
+
+    private static void appendSegment(Path2D path, int segType, double[] c) throws IOException {
+        switch (segType) {
+            case PathIterator.SEG_MOVETO:
+                path.moveTo(c[0], c[1]);
+                break;
+            case PathIterator.SEG_LINETO:
+                path.lineTo(c[0], c[1]);
+                break;
+            case PathIterator.SEG_QUADTO:
+                path.quadTo(c[0], c[1], c[2], c[3]);
+                break;
+            case PathIterator.SEG_CUBICTO:
+                path.curveTo(c[0], c[1], c[2], c[3], c[4], c[5]);
+                break;
+            case PathIterator.SEG_CLOSE:
+                path.closePath();
+                break;
+            default:
+                throw new IOException("Unknown segment type " + segType);
+        }
+    }
+
+    static int coordCount(int segType) {
+        switch (segType) {
+            case PathIterator.SEG_MOVETO:
+            case PathIterator.SEG_LINETO:
+                return 2;
+            case PathIterator.SEG_QUADTO:
+                return 4;
+            case PathIterator.SEG_CUBICTO:
+                return 6;
+            default:
+                return 0;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package gerberViewer;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Schedules renders so that at most one is in flight and at most one more is pending. Every
+ * request is assigned a generation number, which increases monotonically, and a newer request
+ * supersedes all older ones. A render in flight can poll {@link #isStale(long)} to find out if it
+ * has been superseded and should give up. Any number of requests made while a render is in
+ * flight are coalesced into a single pending render of the most recent request. Requesting a
+ * render never blocks.
+ * @param <R> - the type of the description of what is to be rendered
+ */
+class RenderScheduler<R> {
+
+    /**
+     * Performs the actual rendering
+     */
+    interface RenderJob<R> {
+        /**
+         * Renders the request. This is called on the scheduler's executor. Long running renders
+         * should periodically check {@link RenderScheduler#isStale(long)} and return early if it
+         * is true.
+         * @param request - the request to render
+         * @param generation - the generation of the request
+         * @throws Exception if the render fails
+         */
+        void render(R request, long generation) throws Exception;
+    }
+
+    /**
+     * Receives notification each time a render finishes
+     */
+    interface RenderListener {
+        /**
+         * Called on the scheduler's executor after a render returns
+         * @param generation - the generation of the render that finished
+         * @param completed - true if the render ran to completion and was not superseded or
+         * aborted while it was running
+         * @param ex - the exception or error thrown by the render, or null if it returned normally
+         */
+        void renderFinished(long generation, boolean completed, Throwable ex);
+    }
+
+    private final Executor executor;
+    private final RenderJob<R> job;
+    private final RenderListener listener;
+    private R latestRequest;
+    private long requestedGeneration = 0;
+    private long runningGeneration = 0;
+    private long completedGeneration = 0;
+    private long abortedGeneration = 0;
+    private boolean inFlight = false;
+    private boolean pending = false;
+
+    /**
+     * Creates a render scheduler
+     * @param executor - the executor to run the renders on
+     * @param job - performs the rendering
+     * @param listener - receives notification of finished renders, may be null
+     */
+    RenderScheduler(Executor executor, RenderJob<R> job, RenderListener listener) {
+        this.executor = executor;
+        this.job = job;
+        this.listener = listener;
+    }
+
+    /**
+     * Requests a render. If no render is in flight, the render is started immediately, otherwise
+     * it replaces any pending render and will be started as soon as the one in flight returns.
+     * @param request - describes what is to be rendered
+     * @return the generation assigned to the request
+     */
+    synchronized long requestRender(R request) {
+        requestedGeneration++;
+        latestRequest = request;
+        if (inFlight) {
+            pending = true;
+        }
+        else {
+            start();
+        }
+        return requestedGeneration;
+    }
+
+    /**
+     * Aborts the render in flight and discards any pending render
+     */
+    synchronized void abort() {
+        abortedGeneration = requestedGeneration;
+        pending = false;
+        latestRequest = null;
+    }
+
+    /**
+     * @param generation - the generation of a render
+     * @return true if the render has been superseded by a newer request or has been aborted
+     */
+    synchronized boolean isStale(long generation) {
+        return generation < requestedGeneration || generation <= abortedGeneration;
+    }
+
+    /**
+     * @param generation - the generation of a render
+     * @return true if the render has been aborted, renders that have only been superseded are
+     * not considered to be aborted
+     */
+    synchronized boolean isAborted(long generation) {
+        return generation <= abortedGeneration;
+    }
+
+    /**
+     * @return the generation of the most recent request
+     */
+    synchronized long getRequestedGeneration() {
+        return requestedGeneration;
+    }
+
+    /**
+     * @return the generation of the render in flight, or 0 if none is in flight
+     */
+    synchronized long getRunningGeneration() {
+        return inFlight ? runningGeneration : 0;
+    }
+
+    /**
+     * @return the generation of the most recent render that ran to completion
+     */
+    synchronized long getCompletedGeneration() {
+        return completedGeneration;
+    }
+
+    /**
+     * @return true if a render is in flight
+     */
+    synchronized boolean isRenderInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return true if a render is waiting for the one in flight to return
+     */
+    synchronized boolean isRenderPending() {
+        return pending;
+    }
+
+    private void start() {
+        final R request = latestRequest;
+        final long generation = requestedGeneration;
+        latestRequest = null;
+        inFlight = true;
+        runningGeneration = generation;
+        executor.execute(() -> run(request, generation));
+    }
+
+    private void run(R request, long generation) {
+        Throwable failure = null;
+        try {
+            job.render(request, generation);
+        }
+        catch (Throwable ex) {
+            failure = ex;
+            //Errors, such as running out of memory for a large raster, are passed on to the
+            //executor but only once the scheduler is ready for the next render
+            if (ex instanceof Error) {
+                throw (Error) ex;
+            }
+        }
+        finally {
+            boolean completed;
+            synchronized (this) {
+                completed = failure == null && !isStale(generation);
+                if (completed) {
+                    completedGeneration = generation;
+                }
+                inFlight = false;
+                if (pending) {
+                    pending = false;
+                    start();
+                }
+            }
+            if (listener != null) {
+                listener.renderFinished(generation, completed, failure);
+            }
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package gerberViewer;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A static R-tree that is bulk loaded using the Sort-Tile-Recursive (STR) algorithm. Items are
+ * identified by their position in the order they were supplied so that query results can be
+ * processed in the same order the items were originally drawn.
+ * @param <T> - the type of the items that are indexed
+ */
+class SpatialIndex<T> {
+    private static final int NODE_CAPACITY = 16;
+
+    private final List<T> items;
+    private final double[] itemMinX;
+    private final double[] itemMinY;
+    private final double[] itemMaxX;
+    private final double[] itemMaxY;
+
+    //The tree is stored level by level with level 0 being the leaves. The children of node i on
+    //level k are entries childStart[i] through childEnd[i]-1 on level k-1, or, for the leaves, of
+    //the leafItems array.
+    private final List<Level> levels = new ArrayList<>();
+    private int[] leafItems;
+
+    private static class Level {
+        double[] minX;
+        double[] minY;
+        double[] maxX;
+        double[] maxY;
+        int[] childStart;
+        int[] childEnd;
+
+        int size() {
+            return minX.length;
+        }
+    }
+
+    /**
+     * Builds a spatial index
+     * @param items - the items to index
+     * @param boundsOf - a function that gets the bounds of an item
+     */
+    SpatialIndex(Iterable<T> items, Function<T, Rectangle2D> boundsOf) {
+        this.items = new ArrayList<>();
+        for (T item : items) {
+            this.items.add(item);
+        }
+        int n = this.items.size();
+        itemMinX = new double[n];
+        itemMinY = new double[n];
+        itemMaxX = new double[n];
+        itemMaxY = new double[n];
+        for (int i=0; i<n; i++) {
+            Rectangle2D bounds = boundsOf.apply(this.items.get(i));
+            itemMinX[i] = bounds.getMinX();
+            itemMinY[i] = bounds.getMinY();
+            itemMaxX[i] = bounds.getMaxX();
+            itemMaxY[i] = bounds.getMaxY();
+        }
+        if (n == 0) {
+            leafItems = new int[0];
+            return;
+        }
+
+        //Pack the items into leaves
+        Integer[] order = packOrder(itemMinX, itemMinY, itemMaxX, itemMaxY);
+        leafItems = new int[n];
+        for (int i=0; i<n; i++) {
+            leafItems[i] = order[i];
+        }
+        Level level = groupIntoNodes(leafItems, itemMinX, itemMinY, itemMaxX, itemMaxY);
+        levels.add(level);
+
+        //Then keep packing the nodes of each level into parent nodes until only the root remains
+        while (level.size() > 1) {
+            Integer[] nodeOrder = packOrder(level.minX, level.minY, level.maxX, level.maxY);
+            Level reordered = new Level();
+            reordered.minX = new double[level.size()];
+            reordered.minY = new double[level.size()];
+            reordered.maxX = new double[level.size()];
+            reordered.maxY = new double[level.size()];
+            reordered.childStart = new int[level.size()];
+            reordered.childEnd = new int[level.size()];
+            int[] identity = new int[level.size()];
+            for (int i=0; i<level.size(); i++) {
+                int j = nodeOrder[i];
+                reordered.minX[i] = level.minX[j];
+                reordered.minY[i] = level.minY[j];
+                reordered.maxX[i] = level.maxX[j];
+                reordered.maxY[i] = level.maxY[j];
+                reordered.childStart[i] = level.childStart[j];
+                reordered.childEnd[i] = level.childEnd[j];
+                identity[i] = i;
+            }
+            levels.set(levels.size() - 1, reordered);
+            level = groupIntoNodes(identity, reordered.minX, reordered.minY, reordered.maxX, reordered.maxY);
+            levels.add(level);
+        }
+    }
+
+    /**
+     * Sorts entries into Sort-Tile-Recursive order, that is, into vertical slices by the x
+     * coordinate of their centers and then, within each slice, by the y coordinate of their
+     * centers.
+     */
+    private static Integer[] packOrder(double[] minX, double[] minY, double[] maxX, double[] maxY) {
+        int n = minX.length;
+        Integer[] order = new Integer[n];
+        for (int i=0; i<n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble((Integer i) -> minX[i] + maxX[i]));
+        int nodeCount = (n + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int sliceCount = (int) Math.ceil(Math.sqrt(nodeCount));
+        int sliceSize = sliceCount * NODE_CAPACITY;
+        for (int start=0; start<n; start+=sliceSize) {
+            Arrays.sort(order, start, Math.min(start + sliceSize, n),
+                    Comparator.comparingDouble((Integer i) -> minY[i] + maxY[i]));
+        }
+        return order;
+    }
+
+    /**
+     * Groups consecutive runs of entries into nodes
+     */
+    private static Level groupIntoNodes(int[] entries, double[] minX, double[] minY,
+            double[] maxX, double[] maxY) {
+        int nodeCount = (entries.length + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        Level level = new Level();
+        level.minX = new double[nodeCount];
+        level.minY = new double[nodeCount];
+        level.maxX = new double[nodeCount];
+        level.maxY = new double[nodeCount];
+        level.childStart = new int[nodeCount];
+        level.childEnd = new int[nodeCount];
+        for (int node=0; node<nodeCount; node++) {
+            int start = node*NODE_CAPACITY;
+            int end = Math.min(start + NODE_CAPACITY, entries.length);
+            level.childStart[node] = start;
+            level.childEnd[node] = end;
+            level.minX[node] = Double.POSITIVE_INFINITY;
+            level.minY[node] = Double.POSITIVE_INFINITY;
+            level.maxX[node] = Double.NEGATIVE_INFINITY;
+            level.maxY[node] = Double.NEGATIVE_INFINITY;
+            for (int i=start; i<end; i++) {
+                int e = entries[i];
+                level.minX[node] = Math.min(level.minX[node], minX[e]);
+                level.minY[node] = Math.min(level.minY[node], minY[e]);
+                level.maxX[node] = Math.max(level.maxX[node], maxX[e]);
+                level.maxY[node] = Math.max(level.maxY[node], maxY[e]);
+            }
+        }
+        return level;
+    }
+
+    /**
+     * @return the number of items in the index
+     */
+    int size() {
+        return items.size();
+    }
+
+    /**
+     * @param id - the position of the item in the order it was supplied
+     * @return the item
+     */
+    T get(int id) {
+        return items.get(id);
+    }
+
+    /**
+     * @param id - the position of the item in the order it was supplied
+     * @return the bounds of the item at the time the index was built
+     */
+    Rectangle2D getBounds(int id) {
+        return new Rectangle2D.Double(itemMinX[id], itemMinY[id],
+                itemMaxX[id] - itemMinX[id], itemMaxY[id] - itemMinY[id]);
+    }
+
+    /**
+     * Finds all the items whose bounds intersect the specified region
+     * @param region - the region to search
+     * @return the ids of the items in ascending order
+     */
+    int[] query(Rectangle2D region) {
+        if (levels.isEmpty()) {
+            return new int[0];
+        }
+        double qMinX = region.getMinX();
+        double qMinY = region.getMinY();
+        double qMaxX = region.getMaxX();
+        double qMaxY = region.getMaxY();
+        int[] found = new int[16];
+        int foundCount = 0;
+
+        //Walk down the tree one level at a time keeping the nodes that intersect the region
+        int top = levels.size() - 1;
+        int[] nodes = new int[] {0};
+        int nodeCount = 1;
+        for (int k=top; k>=0; k--) {
+            Level level = levels.get(k);
+            int[] next = new int[16];
+            int nextCount = 0;
+            for (int n=0; n<nodeCount; n++) {
+                int node = nodes[n];
+                if (level.maxX[node] < qMinX || level.minX[node] > qMaxX ||
+                        level.maxY[node] < qMinY || level.minY[node] > qMaxY) {
+                    continue;
+                }
+                for (int c=level.childStart[node]; c<level.childEnd[node]; c++) {
+                    if (k > 0) {
+                        if (nextCount == next.length) {
+                            next = Arrays.copyOf(next, 2*next.length);
+                        }
+                        next[nextCount++] = c;
+                    }
+                    else {
+                        int id = leafItems[c];
+                        if (itemMaxX[id] < qMinX || itemMinX[id] > qMaxX ||
+                                itemMaxY[id] < qMinY || itemMinY[id] > qMaxY) {
+                            continue;
+                        }
+                        if (foundCount == found.length) {
+                            found = Arrays.copyOf(found, 2*found.length);
+                        }
+                        found[foundCount++] = id;
+                    }
+                }
+            }
+            nodes = next;
+            nodeCount = nextCount;
+        }
+        int[] ret = Arrays.copyOf(found, foundCount);
+        Arrays.sort(ret);
+        return ret;
+    }
+}
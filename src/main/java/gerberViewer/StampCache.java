@@ -0,0 +1,258 @@
+package gerberViewer;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.WritableRaster;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pre-rasterized stamps of the shapes that are repeated many times on a layer, such as the flashes
+ * of pads, vias and test points. Each shape is rasterized once, with anti-aliasing, for the
+ * current zoom level and the stamp is then blended into the coverage mask at the position of
+ * every object with that shape, which is far cheaper than transforming and filling each object's
+ * outline.
+ * <p>
+ * Objects rarely fall on whole pixels so each shape has a stamp for each of a few sub-pixel
+ * offsets and an object is stamped with the one nearest to its actual position.
+ */
+class StampCache {
+    //Shapes with fewer instances than this are just filled
+    private static final int MIN_INSTANCES = 4;
+    //Shapes larger than this, in pixels, are just filled since blending them isn't much faster
+    private static final int MAX_STAMP_SIZE = 64;
+    //The number of sub-pixel offsets in each direction
+    private static final int SUBPIXEL_STEPS = 4;
+
+    private final long maxBytes;
+    private final ConcurrentHashMap<StampKey, Stamp> stamps = new ConcurrentHashMap<>();
+    //The bytes of the stamps in the map, each stamp is counted when it is added to the map and
+    //uncounted by whichever thread removes it
+    private final AtomicLong currentBytes = new AtomicLong();
+
+    /**
+     * The coverage of a shape relative to the pixel its origin falls in, or, if the shape is too
+     * big to stamp, no coverage at all
+     */
+    private static final class Stamp {
+        final byte[] coverage;
+        final int x;
+        final int y;
+        final int width;
+        final int height;
+
+        Stamp(byte[] coverage, int x, int y, int width, int height) {
+            this.coverage = coverage;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    private static final class StampKey {
+        final GeometryStore geometry;
+        final int shapeId;
+        final double m00;
+        final double m01;
+        final double m10;
+        final double m11;
+        final int subpixelX;
+        final int subpixelY;
+
+        StampKey(GeometryStore geometry, int shapeId, AffineTransform transform, int subpixelX, int subpixelY) {
+            this.geometry = geometry;
+            this.shapeId = shapeId;
+            m00 = transform.getScaleX();
+            m01 = transform.getShearX();
+            m10 = transform.getShearY();
+            m11 = transform.getScaleY();
+            this.subpixelX = subpixelX;
+            this.subpixelY = subpixelY;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof StampKey)) {
+                return false;
+            }
+            StampKey other = (StampKey) obj;
+            return geometry == other.geometry && shapeId == other.shapeId && m00 == other.m00 &&
+                    m01 == other.m01 && m10 == other.m10 && m11 == other.m11 &&
+                    subpixelX == other.subpixelX && subpixelY == other.subpixelY;
+        }
+
+        @Override
+        public int hashCode() {
+            //Computed by hand since this is called for every object that is drawn
+            int hash = System.identityHashCode(geometry);
+            hash = 31*hash + shapeId;
+            hash = 31*hash + Double.hashCode(m00);
+            hash = 31*hash + Double.hashCode(m01);
+            hash = 31*hash + Double.hashCode(m10);
+            hash = 31*hash + Double.hashCode(m11);
+            hash = 31*hash + subpixelX;
+            return 31*hash + subpixelY;
+        }
+    }
+
+    /**
+     * @param maxBytes - the most memory the stamps may use, the cache is emptied when adding a
+     * stamp would exceed it
+     */
+    StampCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Draws an object into a coverage mask with its shape's stamp if its shape is repeated often
+     * enough and is small enough to be worth stamping
+     * @param mask - the coverage mask
+     * @param object - the object
+     * @param transform - the transform from object coordinates to mask coordinates
+     * @param cover - if true, the object covers the mask, otherwise it uncovers it
+     * @return true if the object was drawn, false if it should be filled instead
+     */
+    boolean draw(BufferedImage mask, LayerObject object, AffineTransform transform, boolean cover) {
+        GeometryStore geometry = object.getGeometry();
+        int index = object.getIndex();
+        int shapeId = geometry.getShapeId(index);
+        if (geometry.getShapeInstances(shapeId) < MIN_INSTANCES) {
+            return false;
+        }
+        double[] origin = {geometry.getOriginX(index), geometry.getOriginY(index)};
+        transform.transform(origin, 0, origin, 0, 1);
+        int pixelX = (int) Math.floor(origin[0]);
+        int pixelY = (int) Math.floor(origin[1]);
+        int subpixelX = (int) ((origin[0] - pixelX)*SUBPIXEL_STEPS + 0.5);
+        int subpixelY = (int) ((origin[1] - pixelY)*SUBPIXEL_STEPS + 0.5);
+        if (subpixelX == SUBPIXEL_STEPS) {
+            pixelX++;
+            subpixelX = 0;
+        }
+        if (subpixelY == SUBPIXEL_STEPS) {
+            pixelY++;
+            subpixelY = 0;
+        }
+        StampKey key = new StampKey(geometry, shapeId, transform, subpixelX, subpixelY);
+        Stamp stamp = stamps.get(key);
+        if (stamp == null) {
+            stamp = createStamp(object, transform, subpixelX, subpixelY);
+            if (currentBytes.get() + stamp.coverage.length > maxBytes) {
+                clear();
+            }
+            //Another thread may have just created the same stamp, only the one in the map counts
+            Stamp existing = stamps.putIfAbsent(key, stamp);
+            if (existing == null) {
+                currentBytes.addAndGet(stamp.coverage.length);
+            }
+            else {
+                stamp = existing;
+            }
+        }
+        if (stamp.width == 0) {
+            return false;
+        }
+        blend(mask, stamp, pixelX + stamp.x, pixelY + stamp.y, cover);
+        return true;
+    }
+
+    /**
+     * Rasterizes an object's shape with its origin at the specified sub-pixel offset of pixel 0, 0
+     */
+    private static Stamp createStamp(LayerObject object, AffineTransform transform, int subpixelX, int subpixelY) {
+        GeometryStore geometry = object.getGeometry();
+        int index = object.getIndex();
+        AffineTransform stampTransform = AffineTransform.getTranslateInstance(
+                (double) subpixelX/SUBPIXEL_STEPS, (double) subpixelY/SUBPIXEL_STEPS);
+        stampTransform.concatenate(new AffineTransform(transform.getScaleX(), transform.getShearY(),
+                transform.getShearX(), transform.getScaleY(), 0, 0));
+        stampTransform.translate(-geometry.getOriginX(index), -geometry.getOriginY(index));
+        //Leave a pixel all around for the anti-aliasing
+        Rectangle pixelBounds = stampTransform.createTransformedShape(geometry.getBounds(index)).getBounds();
+        pixelBounds.grow(1, 1);
+        if (pixelBounds.width > MAX_STAMP_SIZE || pixelBounds.height > MAX_STAMP_SIZE) {
+            return new Stamp(new byte[0], 0, 0, 0, 0);
+        }
+        BufferedImage image = CoverageMask.create(pixelBounds.width, pixelBounds.height);
+        Graphics2D g2 = image.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.setColor(Color.WHITE);
+        g2.translate(-pixelBounds.x, -pixelBounds.y);
+        g2.fill(stampTransform.createTransformedShape(geometry.getPath(index)));
+        g2.dispose();
+        byte[] coverage = new byte[pixelBounds.width*pixelBounds.height];
+        image.getRaster().getDataElements(0, 0, pixelBounds.width, pixelBounds.height, coverage);
+        return new Stamp(coverage, pixelBounds.x, pixelBounds.y, pixelBounds.width, pixelBounds.height);
+    }
+
+    /**
+     * Blends a stamp into a coverage mask the same way filling with white, or black, does
+     */
+    private static void blend(BufferedImage mask, Stamp stamp, int x, int y, boolean cover) {
+        WritableRaster raster = mask.getRaster();
+        int x0 = Math.max(x, 0);
+        int y0 = Math.max(y, 0);
+        int x1 = Math.min(x + stamp.width, raster.getWidth());
+        int y1 = Math.min(y + stamp.height, raster.getHeight());
+        if (x0 >= x1 || y0 >= y1) {
+            return;
+        }
+        byte[] pixels = ((DataBufferByte) raster.getDataBuffer()).getData();
+        int stride = ((ComponentSampleModel) raster.getSampleModel()).getScanlineStride();
+        int target = cover ? 255 : 0;
+        for (int py = y0; py < y1; py++) {
+            int stampOffset = (py - y)*stamp.width - x;
+            int pixelOffset = py*stride;
+            for (int px = x0; px < x1; px++) {
+                int alpha = stamp.coverage[stampOffset + px] & 0xFF;
+                if (alpha != 0) {
+                    int dst = pixels[pixelOffset + px] & 0xFF;
+                    pixels[pixelOffset + px] = (byte) (dst + ((target - dst)*alpha + 127)/255);
+                }
+            }
+        }
+    }
+
+    /**
+     * Discards the stamps of the shapes of a geometry store that is no longer in use
+     * @param geometry - the geometry store
+     */
+    void remove(GeometryStore geometry) {
+        for (Map.Entry<StampKey, Stamp> entry : stamps.entrySet()) {
+            if (entry.getKey().geometry == geometry) {
+                remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Discards all the stamps
+     */
+    void clear() {
+        for (Map.Entry<StampKey, Stamp> entry : stamps.entrySet()) {
+            remove(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * @return the number of bytes used by the stamps in the cache
+     */
+    long sizeInBytes() {
+        return currentBytes.get();
+    }
+
+    private void remove(StampKey key, Stamp stamp) {
+        //Only the thread that actually removes the stamp uncounts it
+        if (stamps.remove(key, stamp)) {
+            currentBytes.addAndGet(-stamp.coverage.length);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package gerberViewer;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A memory bounded, least-recently-used cache of rendered image tiles. Tiles are square blocks of
+ * pixels on a grid that is fixed relative to the board (not the screen) so that panning the view
+ * reuses every tile that remains in view and only tiles that newly come into view need to be
+ * rendered. Each tile holds a coverage mask for each layer so that the colors the layers are
+ * displayed with can be changed without re-rendering anything.
+ */
+class TileCache {
+    static final int TILE_SIZE = 256;
+    //The size of a tile's ARGB composite, it is counted whether or not it has been created yet
+    private static final long COMPOSITE_BYTES = 4L*TILE_SIZE*TILE_SIZE;
+
+    private final long maxBytes;
+    private long currentBytes = 0;
+    private final LinkedHashMap<TileKey, Tile> tiles = new LinkedHashMap<>(64, 0.75f, true);
+
+    /**
+     * Identifies a single tile
+     */
+    static final class TileKey {
+        final double scale;
+        final int tileX;
+        final int tileY;
+        final String side;
+        final String layerSet;
+
+        /**
+         * @param scale - the number of pixels per object unit the tile was rendered at
+         * @param tileX - the column of the tile in the tile grid
+         * @param tileY - the row of the tile in the tile grid
+         * @param side - the side of the board being viewed
+         * @param layerSet - identifies the set of layers rendered into the tile
+         */
+        TileKey(double scale, int tileX, int tileY, String side, String layerSet) {
+            this.scale = scale;
+            this.tileX = tileX;
+            this.tileY = tileY;
+            this.side = side;
+            this.layerSet = layerSet;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof TileKey)) {
+                return false;
+            }
+            TileKey other = (TileKey) obj;
+            return Double.compare(scale, other.scale) == 0 && tileX == other.tileX &&
+                    tileY == other.tileY && side.equals(other.side) &&
+                    layerSet.equals(other.layerSet);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(scale, tileX, tileY, side, layerSet);
+        }
+    }
+
+    /**
+     * The coverage masks of a single tile, one for each layer in plot order
+     */
+    static final class Tile {
+        private final String[] functions;
+        private final BufferedImage[] masks;
+        private final BitSet staleLayers;
+        //Only created when the tile is first painted
+        private BufferedImage composite;
+        private ColorScheme compositeColorScheme;
+
+        /**
+         * @param functions - the .FileFunction of each layer in plot order
+         */
+        Tile(String[] functions) {
+            this(functions, new BufferedImage[functions.length], new BitSet(), null, null);
+        }
+
+        private Tile(String[] functions, BufferedImage[] masks, BitSet staleLayers, 
+                BufferedImage composite, ColorScheme compositeColorScheme) {
+            this.functions = functions;
+            this.masks = masks;
+            this.staleLayers = staleLayers;
+            this.composite = composite;
+            this.compositeColorScheme = compositeColorScheme;
+        }
+
+        /**
+         * @return the indices of the layers whose masks are out of date
+         */
+        BitSet getStaleLayers() {
+            return (BitSet) staleLayers.clone();
+        }
+
+        boolean isStale() {
+            return !staleLayers.isEmpty();
+        }
+
+        /**
+         * Creates a copy of this tile that shares the masks of the layers that are up to date
+         * and has no masks for the layers that are stale, ready for just those layers to be
+         * rendered again. Since the masks are shared rather than copied this is cheap.
+         * @return the copy
+         */
+        Tile withoutStaleLayers() {
+            BufferedImage[] freshMasks = masks.clone();
+            for (int i = staleLayers.nextSetBit(0); i >= 0; i = staleLayers.nextSetBit(i + 1)) {
+                freshMasks[i] = null;
+            }
+            return new Tile(functions, freshMasks, new BitSet(), null, null);
+        }
+
+        /**
+         * Gets the coverage mask of a layer creating it if necessary
+         * @param layerIdx - the index of the layer in plot order
+         * @return the mask
+         */
+        BufferedImage getMask(int layerIdx) {
+            if (masks[layerIdx] == null) {
+                masks[layerIdx] = CoverageMask.create(TILE_SIZE, TILE_SIZE);
+            }
+            return masks[layerIdx];
+        }
+
+        /**
+         * Gets the tile's image with each layer tinted by its color in the specified color scheme.
+         * The image is created the first time it is needed and is only recomposited when the color
+         * scheme changes. This must only be called on the Event Dispatch Thread.
+         * @param colorScheme - the color scheme
+         * @return the image
+         */
+        synchronized BufferedImage getComposite(ColorScheme colorScheme) {
+            if (composite == null) {
+                composite = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+                compositeColorScheme = null;
+            }
+            if (colorScheme != compositeColorScheme) {
+                Graphics2D g2 = composite.createGraphics();
+                g2.setColor(colorScheme.backgroundColor);
+                g2.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+                for (int i=0; i<masks.length; i++) {
+                    if (masks[i] != null) {
+                        g2.drawImage(CoverageMask.tint(masks[i], colorScheme.getFunctionColor(functions[i])), 0, 0, null);
+                    }
+                }
+                g2.dispose();
+                compositeColorScheme = colorScheme;
+            }
+            return composite;
+        }
+
+        private long sizeOf() {
+            long size = COMPOSITE_BYTES;
+            for (BufferedImage mask : masks) {
+                if (mask != null) {
+                    size += TileCache.sizeOf(mask);
+                }
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Creates a tile cache that holds no more than the specified number of bytes of image data
+     * @param maxBytes - the memory limit of the cache
+     */
+    TileCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    synchronized Tile get(TileKey key) {
+        return tiles.get(key);
+    }
+
+    /**
+     * Adds a tile to the cache evicting the least recently used tiles as necessary to keep the
+     * cache within its memory limit
+     * @param key - the key of the tile
+     * @param tile - the tile
+     */
+    synchronized void put(TileKey key, Tile tile) {
+        Tile prev = tiles.put(key, tile);
+        if (prev != null) {
+            currentBytes -= prev.sizeOf();
+        }
+        currentBytes += tile.sizeOf();
+        Iterator<Map.Entry<TileKey, Tile>> iter = tiles.entrySet().iterator();
+        while (currentBytes > maxBytes && iter.hasNext()) {
+            Map.Entry<TileKey, Tile> eldest = iter.next();
+            if (eldest.getKey().equals(key)) {
+                continue;
+            }
+            currentBytes -= eldest.getValue().sizeOf();
+            iter.remove();
+        }
+    }
+
+    /**
+     * Marks layers of the cached tiles as out of date. The tiles remain in the cache, and can
+     * still be displayed, until the stale layers have been rendered again.
+     * @param layerSet - the set of layers the tiles must have been rendered from
+     * @param side - the side of the board the tiles must be for, or null for either side
+     * @param layers - the indices of the layers in plot order
+     */
+    synchronized void markStale(String layerSet, String side, BitSet layers) {
+        for (Map.Entry<TileKey, Tile> entry : tiles.entrySet()) {
+            TileKey key = entry.getKey();
+            if (key.layerSet.equals(layerSet) && (side == null || key.side.equals(side))) {
+                Tile tile = entry.getValue();
+                BitSet staleLayers = (BitSet) tile.staleLayers.clone();
+                staleLayers.or(layers);
+                //The tile may be being painted so it is replaced rather than changed. Its masks
+                //haven't changed so its composite is still good, and since composites are only
+                //painted on the Event Dispatch Thread the two tiles can share it.
+                entry.setValue(new Tile(tile.functions, tile.masks, staleLayers, tile.composite, 
+                        tile.compositeColorScheme));
+            }
+        }
+    }
+
+    synchronized void clear() {
+        tiles.clear();
+        currentBytes = 0;
+    }
+
+    private static long sizeOf(BufferedImage image) {
+        DataBuffer dataBuffer = image.getRaster().getDataBuffer();
+        return (long) dataBuffer.getSize() * dataBuffer.getNumBanks() *
+                DataBuffer.getDataTypeSize(dataBuffer.getDataType()) / 8;
+    }
+}
@@ -0,0 +1,110 @@
+package gerberViewer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the parallel tree reduction against adding the areas one at a time
+ */
+class AreaUnionTest {
+    private static final int IMAGE_SIZE = 512;
+
+    @Test
+    void unionMatchesSequentialAdds() {
+        Random random = new Random(1);
+        List<Area> areas = new ArrayList<>();
+        for (int i=0; i<600; i++) {
+            double x = 100*random.nextDouble();
+            double y = 100*random.nextDouble();
+            double w = 0.5 + 5*random.nextDouble();
+            double h = 0.5 + 5*random.nextDouble();
+            areas.add(new Area(random.nextBoolean() ? new Ellipse2D.Double(x, y, w, h) : 
+                new Rectangle2D.Double(x, y, w, h)));
+        }
+        Area expected = new Area();
+        for (Area area : areas) {
+            expected.add(area);
+        }
+        List<Double> progress = new ArrayList<>();
+        Area union = AreaUnion.union(areas, ForkJoinPool.commonPool(), 
+                (p) -> {
+                    synchronized (progress) {
+                        progress.add(p);
+                    }
+                }, () -> false);
+
+        assertEquals(0, countDifferentPixels(expected, union));
+        assertEquals(1.0, progress.stream().mapToDouble(Double::doubleValue).max().getAsDouble(), 1e-9);
+    }
+
+    @Test
+    void areasAreNotModified() {
+        List<Area> areas = new ArrayList<>();
+        for (int i=0; i<20; i++) {
+            areas.add(new Area(new Rectangle2D.Double(i, 0, 1.5, 1)));
+        }
+        List<Area> copies = new ArrayList<>();
+        for (Area area : areas) {
+            copies.add(new Area(area));
+        }
+        AreaUnion.union(areas, ForkJoinPool.commonPool(), null, () -> false);
+        for (int i=0; i<areas.size(); i++) {
+            assertTrue(areas.get(i).equals(copies.get(i)));
+        }
+    }
+
+    @Test
+    void emptyListGivesEmptyArea() {
+        assertTrue(AreaUnion.union(new ArrayList<>(), ForkJoinPool.commonPool(), null, () -> false).isEmpty());
+    }
+
+    @Test
+    void cancelledUnionReturnsNull() {
+        List<Area> areas = new ArrayList<>();
+        for (int i=0; i<100; i++) {
+            areas.add(new Area(new Rectangle2D.Double(i, 0, 1, 1)));
+        }
+        assertNull(AreaUnion.union(areas, ForkJoinPool.commonPool(), null, () -> true));
+    }
+
+    /**
+     * Rasterizes two shapes, without anti-aliasing, and counts the pixels that differ
+     */
+    private static int countDifferentPixels(Shape a, Shape b) {
+        BufferedImage imageA = rasterize(a);
+        BufferedImage imageB = rasterize(b);
+        int count = 0;
+        for (int y=0; y<IMAGE_SIZE; y++) {
+            for (int x=0; x<IMAGE_SIZE; x++) {
+                if (imageA.getRGB(x, y) != imageB.getRGB(x, y)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static BufferedImage rasterize(Shape shape) {
+        BufferedImage image = new BufferedImage(IMAGE_SIZE, IMAGE_SIZE, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g2 = image.createGraphics();
+        g2.setColor(Color.WHITE);
+        g2.fill(AffineTransform.getScaleInstance(IMAGE_SIZE/110.0, IMAGE_SIZE/110.0).createTransformedShape(shape));
+        g2.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,208 @@
+package gerberViewer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Shape;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that simplified outlines stay within their tolerance of the original outlines while
+ * having fewer segments
+ */
+class DetailLevelsTest {
+
+    /**
+     * @return a closed polygon approximating a wavy circle with many vertices
+     */
+    private static Path2D wavyCircle(double cx, double cy, double radius, int vertices) {
+        Path2D path = new Path2D.Double();
+        for (int i=0; i<vertices; i++) {
+            double angle = 2*Math.PI*i/vertices;
+            double r = radius*(1 + 0.05*Math.sin(12*angle));
+            double x = cx + r*Math.cos(angle);
+            double y = cy + r*Math.sin(angle);
+            if (i == 0) {
+                path.moveTo(x, y);
+            }
+            else {
+                path.lineTo(x, y);
+            }
+        }
+        path.closePath();
+        return path;
+    }
+
+    /**
+     * @return the rings of a shape, flattened much more finely than any tolerance under test,
+     * each as an array of x and y coordinates
+     */
+    private static List<double[]> rings(Shape shape) {
+        List<double[]> rings = new ArrayList<>();
+        List<Double> ring = new ArrayList<>();
+        double[] c = new double[6];
+        for (PathIterator pathIter = shape.getPathIterator(null, 1e-6); !pathIter.isDone(); pathIter.next()) {
+            int segType = pathIter.currentSegment(c);
+            if (segType == PathIterator.SEG_MOVETO && !ring.isEmpty()) {
+                rings.add(toArray(ring));
+                ring.clear();
+            }
+            if (segType != PathIterator.SEG_CLOSE) {
+                ring.add(c[0]);
+                ring.add(c[1]);
+            }
+        }
+        if (!ring.isEmpty()) {
+            rings.add(toArray(ring));
+        }
+        return rings;
+    }
+
+    private static double[] toArray(List<Double> list) {
+        double[] array = new double[list.size()];
+        for (int i=0; i<array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * @return the distance from a point to the nearest edge of the closed rings
+     */
+    private static double distance(double x, double y, List<double[]> rings) {
+        double nearest = Double.MAX_VALUE;
+        for (double[] ring : rings) {
+            int n = ring.length/2;
+            for (int i=0; i<n; i++) {
+                int j = (i + 1)%n;
+                nearest = Math.min(nearest, Line2D.ptSegDist(ring[2*i], ring[2*i + 1], ring[2*j], ring[2*j + 1], x, y));
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Checks that every vertex of each outline is within the tolerance of the other outline's
+     * edges
+     */
+    private static void assertWithinTolerance(Shape original, Shape simplified, double tolerance) {
+        List<double[]> originalRings = rings(original);
+        List<double[]> simplifiedRings = rings(simplified);
+        for (double[] ring : originalRings) {
+            for (int i=0; i<ring.length; i+=2) {
+                assertTrue(distance(ring[i], ring[i + 1], simplifiedRings) <= tolerance + 1e-9);
+            }
+        }
+        for (double[] ring : simplifiedRings) {
+            for (int i=0; i<ring.length; i+=2) {
+                assertTrue(distance(ring[i], ring[i + 1], originalRings) <= tolerance + 1e-9);
+            }
+        }
+    }
+
+    private static int countSegments(Shape shape) {
+        int count = 0;
+        for (PathIterator pathIter = shape.getPathIterator(null); !pathIter.isDone(); pathIter.next()) {
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    void polygonStaysWithinTolerance() {
+        Path2D polygon = wavyCircle(50, 50, 20, 4000);
+        for (double tolerance : new double[] {0.001, 0.01, 0.1, 1}) {
+            Path2D simplified = DetailLevels.simplify(polygon, tolerance);
+            assertWithinTolerance(polygon, simplified, tolerance);
+            assertTrue(countSegments(simplified) < countSegments(polygon));
+        }
+        //Coarser tolerances never need more segments
+        assertTrue(countSegments(DetailLevels.simplify(polygon, 1)) < countSegments(DetailLevels.simplify(polygon, 0.01)));
+    }
+
+    @Test
+    void curvesStayWithinTolerance() {
+        Path2D path = new Path2D.Double(Path2D.WIND_EVEN_ODD);
+        path.append(new Ellipse2D.Double(0, 0, 40, 30), false);
+        path.append(new Ellipse2D.Double(10, 10, 10, 5), false);
+        double tolerance = 0.05;
+        Path2D simplified = DetailLevels.simplify(path, tolerance);
+        assertEquals(Path2D.WIND_EVEN_ODD, simplified.getWindingRule());
+        assertEquals(2, rings(simplified).size());
+        assertWithinTolerance(path, simplified, tolerance);
+    }
+
+    @Test
+    void collapsedRingsAreKept() {
+        Path2D path = new Path2D.Double();
+        path.append(new Rectangle2D.Double(0, 0, 10, 10), false);
+        path.append(new Rectangle2D.Double(20, 20, 0.001, 0.001), false);
+        Path2D simplified = DetailLevels.simplify(path, 0.1);
+        List<double[]> rings = rings(simplified);
+        assertEquals(2, rings.size());
+        assertEquals(8, rings.get(0).length);
+        //The tiny ring would collapse so it is kept as it is
+        assertEquals(8, rings.get(1).length);
+        assertEquals(20.001, rings.get(1)[4], 1e-5);
+        assertEquals(20.001, rings.get(1)[5], 1e-5);
+    }
+
+    @Test
+    void thinOutlinesDontDisappear() {
+        //A long sliver, narrower than the tolerance, with plenty of vertices along each side
+        Path2D sliver = new Path2D.Double();
+        sliver.moveTo(0, 0);
+        for (int i=1; i<=40; i++) {
+            sliver.lineTo(i, 0.001*(i%2));
+        }
+        sliver.lineTo(40, 0.02);
+        for (int i=39; i>=0; i--) {
+            sliver.lineTo(i, 0.02 - 0.001*(i%2));
+        }
+        sliver.closePath();
+        Path2D simplified = DetailLevels.simplify(sliver, 0.1);
+        assertEquals(1, rings(simplified).size());
+        assertWithinTolerance(sliver, simplified, 0.1);
+        assertEquals(40, simplified.getBounds2D().getWidth(), 1e-5);
+        assertEquals(0.02, simplified.getBounds2D().getHeight(), 1e-5);
+
+        GeometryStore geometry = new GeometryStore(1e-4, new Rectangle2D.Double(0, 0, 400, 400));
+        int index = geometry.add(sliver);
+        geometry.trim();
+        DetailLevels detailLevels = new DetailLevels(geometry);
+        Shape coarse = detailLevels.getShape(index, 1);
+        assertTrue(countSegments(coarse) > 0);
+        assertTrue(coarse.getBounds2D().getWidth() > 39);
+    }
+
+    @Test
+    void shapesAreSimplifiedOnlyWhenCoarseEnough() {
+        GeometryStore geometry = new GeometryStore(1e-5, new Rectangle2D.Double(0, 0, 100, 100));
+        int pour = geometry.add(wavyCircle(50, 50, 40, 4000));
+        int pad = geometry.add(new Rectangle2D.Double(1, 1, 2, 2));
+        geometry.trim();
+        DetailLevels detailLevels = new DetailLevels(geometry);
+
+        //Finer than the finest level the full outline is used
+        Shape full = detailLevels.getShape(pour, 1e-6);
+        assertEquals(countSegments(geometry.getPath(pour)), countSegments(full));
+
+        //The coarsest level is a small fraction of the size of the full outline and is reused
+        Shape coarse = detailLevels.getShape(pour, 1);
+        assertTrue(countSegments(coarse) < countSegments(full)/4);
+        //The coarsest level's tolerance is 1/4000 of the size of the extent
+        assertWithinTolerance(geometry.getPath(pour), coarse, 100.0/4000);
+        assertSame(coarse, detailLevels.getShape(pour, 1));
+
+        //Simple outlines are always used as is
+        assertEquals(countSegments(geometry.getPath(pad)), countSegments(detailLevels.getShape(pad, 1)));
+    }
+}
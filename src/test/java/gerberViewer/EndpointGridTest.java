@@ -0,0 +1,84 @@
+package gerberViewer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the grid's nearest endpoint searches against a scan of every remaining endpoint
+ */
+class EndpointGridTest {
+
+    @Test
+    void nearestMatchesBruteForce() {
+        Random random = new Random(2);
+        List<Point2D> beginnings = new ArrayList<>();
+        List<Point2D> endings = new ArrayList<>();
+        for (int i=0; i<500; i++) {
+            //Snap to a coarse grid so that there are plenty of ties and shared endpoints
+            beginnings.add(new Point2D.Double(random.nextInt(200)/4.0, random.nextInt(100)/4.0));
+            endings.add(new Point2D.Double(random.nextInt(200)/4.0, random.nextInt(100)/4.0));
+        }
+        EndpointGrid grid = new EndpointGrid(beginnings, endings);
+        while (grid.size() > 0) {
+            //Include points well outside the grid
+            Point2D pt = new Point2D.Double(120*random.nextDouble() - 35, 90*random.nextDouble() - 30);
+            int expected = bruteForceNearest(grid, beginnings.size(), pt);
+            assertEquals(expected, grid.nearest(pt));
+            int pathIdx = expected/2;
+            grid.remove(pathIdx);
+            assertTrue(grid.isRemoved(pathIdx));
+        }
+        assertEquals(-1, grid.nearest(new Point2D.Double(0, 0)));
+    }
+
+    @Test
+    void removingTwiceCountsOnce() {
+        List<Point2D> beginnings = List.of(new Point2D.Double(0, 0), new Point2D.Double(1, 1));
+        List<Point2D> endings = List.of(new Point2D.Double(0, 1), new Point2D.Double(1, 0));
+        EndpointGrid grid = new EndpointGrid(beginnings, endings);
+        grid.remove(0);
+        grid.remove(0);
+        assertEquals(1, grid.size());
+        assertFalse(grid.isRemoved(1));
+        assertEquals(3, grid.nearest(new Point2D.Double(-5, -5)));
+    }
+
+    @Test
+    void coincidentEndpointsPreferBeginnings() {
+        Point2D pt = new Point2D.Double(3, 4);
+        List<Point2D> beginnings = List.of(new Point2D.Double(9, 9), new Point2D.Double(3, 4));
+        List<Point2D> endings = List.of(new Point2D.Double(3, 4), new Point2D.Double(8, 8));
+        EndpointGrid grid = new EndpointGrid(beginnings, endings);
+        assertEquals(2, grid.nearest(pt));
+        grid.remove(1);
+        assertEquals(1, grid.nearest(pt));
+    }
+
+    private static int bruteForceNearest(EndpointGrid grid, int pathCount, Point2D pt) {
+        int best = -1;
+        double bestDist = Double.POSITIVE_INFINITY;
+        //Beginnings first and then endings, each by ascending path index, so that the first of
+        //any equally near endpoints is the preferred one
+        for (int end=0; end<2; end++) {
+            for (int pathIdx=0; pathIdx<pathCount; pathIdx++) {
+                if (grid.isRemoved(pathIdx)) {
+                    continue;
+                }
+                int id = 2*pathIdx + end;
+                double dist = pt.distance(grid.getPoint(id));
+                if (dist < bestDist) {
+                    best = id;
+                    bestDist = dist;
+                }
+            }
+        }
+        return best;
+    }
+}
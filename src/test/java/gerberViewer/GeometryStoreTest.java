@@ -0,0 +1,164 @@
+package gerberViewer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Shape;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that outlines come back out of a store within the documented quantization error and
+ * that a store survives being written and read back unchanged
+ */
+class GeometryStoreTest {
+    private static final double RESOLUTION = 1e-4;
+
+    private static List<Shape> randomShapes(Random random, int count) {
+        List<Shape> shapes = new ArrayList<>();
+        for (int i=0; i<count; i++) {
+            double x = 50*random.nextDouble();
+            double y = 50*random.nextDouble();
+            double w = 0.1 + 3*random.nextDouble();
+            double h = 0.1 + 3*random.nextDouble();
+            switch (i%4) {
+                case 0:
+                    shapes.add(new Ellipse2D.Double(x, y, w, h));
+                    break;
+                case 1:
+                    shapes.add(new RoundRectangle2D.Double(x, y, w, h, w/3, h/3));
+                    break;
+                case 2:
+                    Area area = new Area(new Ellipse2D.Double(x, y, w, w));
+                    area.subtract(new Area(new Rectangle2D.Double(x + w/4, y + w/4, w/2, w/2)));
+                    shapes.add(area);
+                    break;
+                default:
+                    shapes.add(new Area());
+                    break;
+            }
+        }
+        return shapes;
+    }
+
+    private static GeometryStore storeOf(List<Shape> shapes) {
+        GeometryStore store = new GeometryStore(RESOLUTION, new Rectangle2D.Double(0, 0, 60, 60));
+        for (Shape shape : shapes) {
+            store.add(shape);
+        }
+        store.trim();
+        return store;
+    }
+
+    @Test
+    void outlinesAreWithinHalfAStep() {
+        List<Shape> shapes = randomShapes(new Random(4), 400);
+        GeometryStore store = storeOf(shapes);
+        assertEquals(shapes.size(), store.size());
+        for (int i=0; i<shapes.size(); i++) {
+            PathIterator expected = shapes.get(i).getPathIterator(null);
+            PathIterator actual = store.getPath(i).getPathIterator(null);
+            assertEquals(expected.getWindingRule(), actual.getWindingRule());
+            double[] e = new double[6];
+            double[] a = new double[6];
+            int segments = 0;
+            while (!expected.isDone()) {
+                assertTrue(!actual.isDone());
+                int segType = expected.currentSegment(e);
+                assertEquals(segType, actual.currentSegment(a));
+                for (int j=0; j<PathCodec.coordCount(segType); j++) {
+                    assertTrue(Math.abs(e[j] - a[j]) <= RESOLUTION/2 + 1e-12);
+                }
+                expected.next();
+                actual.next();
+                segments++;
+            }
+            assertTrue(actual.isDone());
+            assertEquals(segments, store.getSegmentCount(i));
+        }
+    }
+
+    @Test
+    void translatedOutlinesShareAShape() {
+        GeometryStore store = new GeometryStore(RESOLUTION, null);
+        int a = store.add(new Rectangle2D.Double(1, 1, 0.5, 0.25));
+        int b = store.add(new Rectangle2D.Double(7.5, -3, 0.5, 0.25));
+        int c = store.add(new Rectangle2D.Double(1, 1, 0.25, 0.5));
+        store.trim();
+        assertEquals(store.getShapeId(a), store.getShapeId(b));
+        assertNotEquals(store.getShapeId(a), store.getShapeId(c));
+        assertEquals(2, store.getShapeInstances(store.getShapeId(a)));
+        assertEquals(7.5, store.getOriginX(b), 1e-9);
+        assertEquals(-3, store.getOriginY(b), 1e-9);
+    }
+
+    @Test
+    void coarsensResolutionToFitExtent() {
+        GeometryStore store = new GeometryStore(1e-6, new Rectangle2D.Double(-5000, -5000, 10000, 10000));
+        assertTrue(2*5000/store.getResolution() <= Integer.MAX_VALUE);
+        int index = store.add(new Rectangle2D.Double(4000, -4000, 1, 1));
+        store.trim();
+        Rectangle2D bounds = store.getBounds(index);
+        assertEquals(4000, bounds.getMinX(), store.getResolution());
+        assertEquals(-3999, bounds.getMaxY(), store.getResolution());
+    }
+
+    @Test
+    void writeAndReadRoundTrip() throws IOException {
+        GeometryStore store = storeOf(randomShapes(new Random(5), 200));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            store.write(out);
+        }
+        ByteBuffer in = ByteBuffer.wrap(bytes.toByteArray());
+        GeometryStore copy = GeometryStore.read(in);
+        assertEquals(0, in.remaining());
+        assertEquals(store.size(), copy.size());
+        assertEquals(store.getResolution(), copy.getResolution(), 0);
+        for (int i=0; i<store.size(); i++) {
+            assertTrue(samePath(store.getPath(i), copy.getPath(i)));
+            assertEquals(store.getBounds(i), copy.getBounds(i));
+            assertEquals(store.getShapeId(i), copy.getShapeId(i));
+        }
+    }
+
+    /**
+     * @return true if the paths have exactly the same segments and coordinates
+     */
+    static boolean samePath(Path2D a, Path2D b) {
+        PathIterator iterA = a.getPathIterator(null);
+        PathIterator iterB = b.getPathIterator(null);
+        if (iterA.getWindingRule() != iterB.getWindingRule()) {
+            return false;
+        }
+        double[] ca = new double[6];
+        double[] cb = new double[6];
+        while (!iterA.isDone() && !iterB.isDone()) {
+            int segType = iterA.currentSegment(ca);
+            if (iterB.currentSegment(cb) != segType) {
+                return false;
+            }
+            for (int j=0; j<PathCodec.coordCount(segType); j++) {
+                if (ca[j] != cb[j]) {
+                    return false;
+                }
+            }
+            iterA.next();
+            iterB.next();
+        }
+        return iterA.isDone() && iterB.isDone();
+    }
+}
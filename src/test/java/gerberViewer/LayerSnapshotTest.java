@@ -0,0 +1,127 @@
+package gerberViewer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import gerberFileReader.Polarity;
+import gerberFileReader.Units;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that a layer survives being stored as a snapshot and restored, and that a snapshot is
+ * never used for the wrong contents
+ */
+class LayerSnapshotTest {
+    private static final String HASH = "0123456789abcdef";
+
+    @TempDir
+    File directory;
+
+    private static GerberLayer createLayer(File gerberFile, AttributePool pool) {
+        LayerAttributes fileAttributes = pool.getAttributeSet(Arrays.asList(
+                pool.getAttribute(".FileFunction", Arrays.asList("Copper", "L1", "Top"), ".FileFunction,Copper,L1,Top")));
+        LayerAttributes padAttributes = pool.getAttributeSet(Arrays.asList(
+                pool.getAttribute(".P", Arrays.asList("U1", "3"), ".P,U1,3"),
+                pool.getAttribute(".N", Arrays.asList("GND"), ".N,GND")));
+        GeometryStore geometry = new GeometryStore(1e-4, new Rectangle2D.Double(0, 0, 20, 20));
+        List<LayerObject> objects = new ArrayList<>();
+        geometry.add(new Rectangle2D.Double(1, 1, 2, 1));
+        objects.add(new LayerObject(geometry, 0, Polarity.DARK, padAttributes, "", "", null, 0));
+        geometry.add(new Ellipse2D.Double(5, 5, 1, 1));
+        objects.add(new LayerObject(geometry, 1, Polarity.CLEAR, LayerAttributes.EMPTY, "R1", "B2", null, 0));
+        Path2D strokePath = new Path2D.Double();
+        strokePath.moveTo(2, 2);
+        strokePath.lineTo(12, 7);
+        geometry.add(new Rectangle2D.Double(1.75, 1.75, 10.5, 5.5));
+        objects.add(new LayerObject(geometry, 2, Polarity.DARK, padAttributes, "", "", strokePath, 0.5));
+        geometry.trim();
+        return new GerberLayer(gerberFile, HASH, Units.MILLIMETERS, pool, fileAttributes, geometry, objects,
+                new Rectangle2D.Double(1, 1, 11.25, 6.25));
+    }
+
+    @Test
+    void layerRoundTrips() throws IOException {
+        File gerberFile = new File(directory, "top.gbr");
+        GerberLayer layer = createLayer(gerberFile, new AttributePool());
+        LayerSnapshot snapshots = new LayerSnapshot(directory, Long.MAX_VALUE);
+        snapshots.store(layer, HASH);
+
+        AttributePool pool = new AttributePool();
+        GerberLayer restored = snapshots.load(gerberFile, HASH, pool);
+        assertTrue(restored != null);
+        assertEquals(gerberFile, restored.getGerberFile());
+        assertEquals(HASH, restored.getContentHash());
+        assertEquals(Units.MILLIMETERS, restored.getUnits());
+        assertSame(pool, restored.getAttributePool());
+        assertEquals(layer.getBounds(), restored.getBounds());
+        assertEquals(Arrays.asList("Copper", "L1", "Top"),
+                restored.getFileAttributes().get(".FileFunction").getValues());
+        assertEquals(layer.getObjects().size(), restored.getObjects().size());
+        for (int i=0; i<layer.getObjects().size(); i++) {
+            LayerObject expected = layer.getObjects().get(i);
+            LayerObject actual = restored.getObjects().get(i);
+            assertEquals(expected.getPolarity(), actual.getPolarity());
+            assertEquals(expected.getRepeatId(), actual.getRepeatId());
+            assertEquals(expected.getBlockId(), actual.getBlockId());
+            assertEquals(expected.getAttributes().keySet(), actual.getAttributes().keySet());
+            for (String name : expected.getAttributes().keySet()) {
+                assertEquals(expected.getAttributes().get(name).toString(), actual.getAttributes().get(name).toString());
+            }
+            assertTrue(GeometryStoreTest.samePath(expected.getGeometry().getPath(expected.getIndex()),
+                    actual.getGeometry().getPath(actual.getIndex())));
+            assertEquals(expected.getStrokePath() != null, actual.getStrokePath() != null);
+            if (expected.getStrokePath() != null) {
+                assertTrue(GeometryStoreTest.samePath(expected.getStrokePath(), actual.getStrokePath()));
+            }
+            assertEquals(expected.getStrokeWidth(), actual.getStrokeWidth(), 0);
+        }
+        //Objects that shared attributes still share them, interned in the new pool
+        assertSame(restored.getObjects().get(0).getAttributes(), restored.getObjects().get(2).getAttributes());
+        assertSame(LayerAttributes.EMPTY, restored.getObjects().get(1).getAttributes());
+    }
+
+    @Test
+    void missingSnapshotIsNotLoaded() {
+        LayerSnapshot snapshots = new LayerSnapshot(directory, Long.MAX_VALUE);
+        assertNull(snapshots.load(new File(directory, "top.gbr"), HASH, new AttributePool()));
+    }
+
+    @Test
+    void snapshotOfOtherContentsIsNotLoaded() throws IOException {
+        File gerberFile = new File(directory, "top.gbr");
+        LayerSnapshot snapshots = new LayerSnapshot(directory, Long.MAX_VALUE);
+        snapshots.store(createLayer(gerberFile, new AttributePool()), HASH);
+        //A snapshot renamed to another hash must not be used for that hash
+        String otherHash = "fedcba9876543210";
+        Files.move(new File(directory, HASH + ".gvs").toPath(), new File(directory, otherHash + ".gvs").toPath());
+        assertNull(snapshots.load(gerberFile, otherHash, new AttributePool()));
+    }
+
+    @Test
+    void corruptSnapshotIsDeleted() throws IOException {
+        File gerberFile = new File(directory, "top.gbr");
+        LayerSnapshot snapshots = new LayerSnapshot(directory, Long.MAX_VALUE);
+        snapshots.store(createLayer(gerberFile, new AttributePool()), HASH);
+        File snapshot = new File(directory, HASH + ".gvs");
+        try (RandomAccessFile file = new RandomAccessFile(snapshot, "rw")) {
+            file.setLength(file.length()/2);
+        }
+        assertNull(snapshots.load(gerberFile, HASH, new AttributePool()));
+        assertTrue(!snapshot.exists());
+        assertEquals(Collections.emptyList(), Arrays.asList(directory.list((dir, name) -> name.endsWith(".gvs"))));
+    }
+}
@@ -0,0 +1,118 @@
+package gerberViewer;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import gerberFileReader.GerberFileReader;
+
+/**
+ * Compares the time taken to parse Gerber files with the time taken to restore them from their
+ * snapshots, and the heap used by the parsed files' areas with the heap used by their layers'
+ * geometry stores. Usage: LoadBenchmark file-or-directory...
+ */
+public class LoadBenchmark {
+    private static final int SNAPSHOT_LOADS = 5;
+
+    public static void main(String[] args) throws Exception {
+        List<File> files = new ArrayList<>();
+        for (String arg : args) {
+            File file = new File(arg);
+            if (file.isDirectory()) {
+                for (File child : file.listFiles()) {
+                    if (child.getName().toLowerCase().endsWith(".gbr")) {
+                        files.add(child);
+                    }
+                }
+            }
+            else {
+                files.add(file);
+            }
+        }
+        if (files.isEmpty()) {
+            System.out.println("Usage: LoadBenchmark file-or-directory...");
+            return;
+        }
+
+        //Parse everything first, keeping the readers, to measure the heap their areas use
+        long baseHeap = usedHeap();
+        List<GerberFileReader> readers = new ArrayList<>();
+        long[] parseTimes = new long[files.size()];
+        for (int i=0; i<files.size(); i++) {
+            long start = System.nanoTime();
+            GerberFileReader reader = new GerberFileReader(files.get(i));
+            CompletableFuture<Void> parsed = new CompletableFuture<>();
+            reader.parseFileInBackground((p) -> {}, () -> parsed.complete(null),
+                    (ex) -> parsed.completeExceptionally(ex));
+            parsed.join();
+            readers.add(reader);
+            parseTimes[i] = System.nanoTime() - start;
+        }
+        long readerHeap = usedHeap() - baseHeap;
+
+        //Then convert them to layers and let the readers go
+        List<GerberLayer> layers = new ArrayList<>();
+        AttributePool attributePool = new AttributePool();
+        for (int i=0; i<readers.size(); i++) {
+            //The viewer has already read the header by the time a file is parsed
+            int coordinateDecimals = GerberHeader.read(files.get(i)).getCoordinateDecimals();
+            long start = System.nanoTime();
+            layers.add(GerberLayer.from(readers.get(i), files.get(i), null, coordinateDecimals, attributePool));
+            parseTimes[i] += System.nanoTime() - start;
+            readers.set(i, null);
+        }
+        readers = null;
+        long layerHeap = usedHeap() - baseHeap;
+
+        File directory = Files.createTempDirectory("snapshots").toFile();
+        LayerSnapshot snapshots = new LayerSnapshot(directory, Long.MAX_VALUE);
+        long totalParse = 0;
+        long totalLoad = 0;
+        long totalGeometry = 0;
+        System.out.println("File, Bytes, Objects, Parse ms, Geometry bytes, Snapshot bytes, Snapshot load ms");
+        for (int i=0; i<files.size(); i++) {
+            File file = files.get(i);
+            GerberLayer layer = layers.get(i);
+            String hash = ContentHash.of(file).getHash();
+            snapshots.store(layer, hash);
+            //Take the best of several loads so that the first load doesn't pay for warming up
+            long loadTime = Long.MAX_VALUE;
+            for (int j=0; j<SNAPSHOT_LOADS; j++) {
+                long start = System.nanoTime();
+                snapshots.load(file, hash, new AttributePool());
+                loadTime = Math.min(loadTime, System.nanoTime() - start);
+            }
+            long geometryBytes = layer.getGeometry().sizeInBytes();
+            System.out.println(String.format("%s, %d, %d, %.1f, %d, %d, %.1f", file.getName(), file.length(),
+                    layer.getObjects().size(), parseTimes[i]/1e6, geometryBytes,
+                    new File(directory, hash + ".gvs").length(), loadTime/1e6));
+            totalParse += parseTimes[i];
+            totalLoad += loadTime;
+            totalGeometry += geometryBytes;
+        }
+        System.out.println(String.format("Total: parse %.1f ms, snapshot load %.1f ms, %.1fx faster",
+                totalParse/1e6, totalLoad/1e6, (double) totalParse/totalLoad));
+        System.out.println(String.format("Heap: readers %.1f MB, layers %.1f MB (geometry stores %.1f MB), %.1fx smaller",
+                readerHeap/1e6, layerHeap/1e6, totalGeometry/1e6, (double) readerHeap/layerHeap));
+
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    /**
+     * @return the number of bytes of heap in use after collecting as much garbage as possible
+     */
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i=0; i<5; i++) {
+            System.gc();
+            Thread.sleep(50);
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
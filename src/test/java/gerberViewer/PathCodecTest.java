@@ -0,0 +1,59 @@
+package gerberViewer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that shapes are read back exactly as they were written
+ */
+class PathCodecTest {
+
+    @Test
+    void shapesRoundTripExactly() throws IOException {
+        Path2D open = new Path2D.Double(Path2D.WIND_EVEN_ODD);
+        open.moveTo(0.1, 0.2);
+        open.quadTo(1.3, 5.7, 2.9, -0.4);
+        open.lineTo(Math.PI, Math.E);
+        Area holed = new Area(new Ellipse2D.Double(0, 0, 10, 10));
+        holed.subtract(new Area(new Rectangle2D.Double(2, 2, 3, 3)));
+        Path2D[] paths = new Path2D[] {open, new Path2D.Double(holed), new Path2D.Double()};
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (Path2D path : paths) {
+                PathCodec.write(out, path);
+            }
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        for (Path2D path : paths) {
+            assertTrue(GeometryStoreTest.samePath(path, PathCodec.read(in)));
+            assertTrue(GeometryStoreTest.samePath(path, PathCodec.read(buffer)));
+        }
+        assertEquals(0, buffer.remaining());
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    void unknownSegmentTypeIsRejected() {
+        ByteBuffer buffer = ByteBuffer.allocate(6);
+        buffer.put((byte) Path2D.WIND_NON_ZERO);
+        buffer.putInt(1);
+        buffer.put((byte) 9);
+        buffer.flip();
+        assertThrows(IOException.class, () -> PathCodec.read(buffer));
+    }
+}
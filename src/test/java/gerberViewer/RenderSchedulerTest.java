@@ -0,0 +1,175 @@
+package gerberViewer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Drives the scheduler through superseded and aborted renders. The renders are queued on an
+ * executor that only runs them when told to so that every interleaving is deterministic.
+ */
+class RenderSchedulerTest {
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private final List<String> rendered = new ArrayList<>();
+    private final List<Long> finished = new ArrayList<>();
+    private final List<Boolean> completed = new ArrayList<>();
+    private final List<Throwable> failures = new ArrayList<>();
+    private RenderScheduler<String> scheduler;
+    private Runnable duringRender;
+
+    @BeforeEach
+    void setUp() {
+        duringRender = null;
+        scheduler = new RenderScheduler<>(tasks::add, 
+                (request, generation) -> {
+                    rendered.add(request + generation);
+                    if (duringRender != null) {
+                        duringRender.run();
+                    }
+                    if (request.equals("fail")) {
+                        throw new IllegalStateException(request);
+                    }
+                    if (request.equals("error")) {
+                        throw new OutOfMemoryError(request);
+                    }
+                }, 
+                (generation, done, ex) -> {
+                    finished.add(generation);
+                    completed.add(done);
+                    failures.add(ex);
+                });
+    }
+
+    private void runNext() {
+        tasks.remove().run();
+    }
+
+    @Test
+    void requestsWhileInFlightAreCoalesced() {
+        assertEquals(1, scheduler.requestRender("a"));
+        assertEquals(1, scheduler.getRunningGeneration());
+        assertTrue(scheduler.isRenderInFlight());
+        assertFalse(scheduler.isRenderPending());
+        assertEquals(2, scheduler.requestRender("b"));
+        assertEquals(3, scheduler.requestRender("c"));
+        assertTrue(scheduler.isRenderPending());
+        assertEquals(1, tasks.size());
+        assertTrue(scheduler.isStale(1));
+        assertFalse(scheduler.isAborted(1));
+
+        runNext();
+        assertEquals(List.of("a1"), rendered);
+        assertEquals(List.of(1L), finished);
+        assertEquals(List.of(false), completed);
+        assertEquals(0, scheduler.getCompletedGeneration());
+        //Only the most recent of the pending requests is rendered
+        assertEquals(3, scheduler.getRunningGeneration());
+        assertFalse(scheduler.isRenderPending());
+
+        runNext();
+        assertEquals(List.of("a1", "c3"), rendered);
+        assertEquals(List.of(false, true), completed);
+        assertEquals(3, scheduler.getCompletedGeneration());
+        assertFalse(scheduler.isRenderInFlight());
+        assertEquals(0, scheduler.getRunningGeneration());
+        assertTrue(tasks.isEmpty());
+    }
+
+    @Test
+    void supersededWhileRendering() {
+        scheduler.requestRender("a");
+        duringRender = () -> {
+            duringRender = null;
+            scheduler.requestRender("b");
+            assertTrue(scheduler.isStale(1));
+        };
+        runNext();
+        assertEquals(List.of(false), completed);
+        runNext();
+        assertEquals(List.of(false, true), completed);
+        assertEquals(List.of("a1", "b2"), rendered);
+        assertEquals(2, scheduler.getCompletedGeneration());
+    }
+
+    @Test
+    void abortDiscardsPendingRender() {
+        scheduler.requestRender("a");
+        scheduler.requestRender("b");
+        scheduler.abort();
+        assertTrue(scheduler.isAborted(1));
+        assertTrue(scheduler.isAborted(2));
+        assertTrue(scheduler.isStale(2));
+        assertFalse(scheduler.isRenderPending());
+
+        runNext();
+        assertEquals(List.of(false), completed);
+        assertFalse(scheduler.isRenderInFlight());
+        assertTrue(tasks.isEmpty());
+        assertEquals(0, scheduler.getCompletedGeneration());
+
+        //Requests made after an abort are not affected by it
+        assertEquals(3, scheduler.requestRender("c"));
+        assertFalse(scheduler.isStale(3));
+        assertFalse(scheduler.isAborted(3));
+        runNext();
+        assertEquals(List.of("a1", "c3"), rendered);
+        assertEquals(List.of(false, true), completed);
+        assertEquals(3, scheduler.getCompletedGeneration());
+    }
+
+    @Test
+    void abortedWhileRendering() {
+        scheduler.requestRender("a");
+        duringRender = () -> {
+            scheduler.abort();
+            assertTrue(scheduler.isAborted(1));
+        };
+        runNext();
+        assertEquals(List.of(false), completed);
+        assertNull(failures.get(0));
+        assertEquals(0, scheduler.getCompletedGeneration());
+    }
+
+    @Test
+    void failedRenderIsNotCompleted() {
+        scheduler.requestRender("fail");
+        scheduler.requestRender("a");
+        runNext();
+        assertEquals(List.of(false), completed);
+        assertSame(IllegalStateException.class, failures.get(0).getClass());
+        //The pending render still starts
+        runNext();
+        assertEquals(List.of(false, true), completed);
+        assertEquals(2, scheduler.getCompletedGeneration());
+    }
+
+    @Test
+    void errorDoesNotStopRendering() {
+        scheduler.requestRender("error");
+        scheduler.requestRender("a");
+        //The error still reaches the executor
+        assertThrows(OutOfMemoryError.class, () -> runNext());
+        assertEquals(List.of(false), completed);
+        assertSame(OutOfMemoryError.class, failures.get(0).getClass());
+        //The pending render still starts and later requests are not stuck behind the error
+        assertTrue(scheduler.isRenderInFlight());
+        runNext();
+        assertEquals(List.of(false, true), completed);
+        assertEquals(2, scheduler.getCompletedGeneration());
+        assertFalse(scheduler.isRenderInFlight());
+        assertEquals(3, scheduler.requestRender("b"));
+        assertEquals(3, scheduler.getRunningGeneration());
+        runNext();
+        assertEquals(3, scheduler.getCompletedGeneration());
+    }
+}
@@ -0,0 +1,173 @@
+package gerberViewer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.BasicStroke;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks which drawn objects are recognized as having been drawn with a round aperture so that
+ * they can be stroked along their center-lines rather than filled
+ */
+class RoundStrokeTest {
+    private static final double TOLERANCE = 1e-6;
+    private static final double WIDTH = 0.25;
+
+    private static Path2D line(double x1, double y1, double x2, double y2) {
+        return new Path2D.Double(new Line2D.Double(x1, y1, x2, y2));
+    }
+
+    private static Path2D arc(double start, double extent) {
+        return new Path2D.Double(new Arc2D.Double(-2, -2, 4, 4, start, extent, Arc2D.OPEN));
+    }
+
+    /**
+     * @return the area covered by dragging a convex aperture, centered on the origin, along a
+     * path. Along each straight piece of the flattened path that is the convex hull of the
+     * aperture at both ends of the piece.
+     */
+    private static Area sweep(Shape aperture, Path2D path) {
+        List<double[]> outline = new ArrayList<>();
+        double[] c = new double[6];
+        for (PathIterator iter = aperture.getPathIterator(null, 1e-5); !iter.isDone(); iter.next()) {
+            if (iter.currentSegment(c) != PathIterator.SEG_CLOSE) {
+                outline.add(new double[] {c[0], c[1]});
+            }
+        }
+        Area area = new Area();
+        double prevX = 0;
+        double prevY = 0;
+        for (PathIterator iter = path.getPathIterator(null, 1e-4); !iter.isDone(); iter.next()) {
+            int segType = iter.currentSegment(c);
+            if (segType == PathIterator.SEG_LINETO) {
+                List<double[]> points = new ArrayList<>();
+                for (double[] p : outline) {
+                    points.add(new double[] {prevX + p[0], prevY + p[1]});
+                    points.add(new double[] {c[0] + p[0], c[1] + p[1]});
+                }
+                area.add(new Area(convexHull(points)));
+            }
+            prevX = c[0];
+            prevY = c[1];
+        }
+        return area;
+    }
+
+    private static Path2D convexHull(List<double[]> points) {
+        points.sort((a, b) -> a[0] != b[0] ? Double.compare(a[0], b[0]) : Double.compare(a[1], b[1]));
+        double[][] hull = new double[2*points.size()][];
+        int n = 0;
+        for (int pass=0; pass<2; pass++) {
+            int lowerSize = n;
+            for (int i=0; i<points.size(); i++) {
+                double[] p = points.get(pass == 0 ? i : points.size() - 1 - i);
+                while (n >= lowerSize + 2 && cross(hull[n - 2], hull[n - 1], p) <= 0) {
+                    n--;
+                }
+                hull[n++] = p;
+            }
+            n--;
+        }
+        Path2D path = new Path2D.Double();
+        path.moveTo(hull[0][0], hull[0][1]);
+        for (int i=1; i<n; i++) {
+            path.lineTo(hull[i][0], hull[i][1]);
+        }
+        path.closePath();
+        return path;
+    }
+
+    private static double cross(double[] o, double[] a, double[] b) {
+        return (a[0] - o[0])*(b[1] - o[1]) - (a[1] - o[1])*(b[0] - o[0]);
+    }
+
+    private static Area roundStroke(Path2D path) {
+        return new Area(new BasicStroke((float) WIDTH, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND)
+                .createStrokedShape(path));
+    }
+
+    private static Shape polygon(int sides, double radius, double rotation) {
+        Path2D polygon = new Path2D.Double();
+        for (int i=0; i<sides; i++) {
+            double angle = rotation + 2*Math.PI*i/sides;
+            if (i == 0) {
+                polygon.moveTo(radius*Math.cos(angle), radius*Math.sin(angle));
+            }
+            else {
+                polygon.lineTo(radius*Math.cos(angle), radius*Math.sin(angle));
+            }
+        }
+        polygon.closePath();
+        return polygon;
+    }
+
+    private static double width(Area area, Path2D path) {
+        return GerberLayer.getRoundStrokeWidth(area, path, TOLERANCE);
+    }
+
+    @Test
+    void roundStrokesAreRecognized() {
+        Path2D[] paths = {line(0, 0, 3, 0), line(1, 1, 1, -2), line(0, 0, 2, 1.5), line(0, 0, -1, -2),
+                arc(0, 90), arc(30, 90), arc(45, 200), arc(0, 360)};
+        for (Path2D path : paths) {
+            assertEquals(WIDTH, width(roundStroke(path), path), 0.01*WIDTH);
+        }
+    }
+
+    @Test
+    void sweptRoundAperturesAreRecognized() {
+        Shape circle = new Ellipse2D.Double(-WIDTH/2, -WIDTH/2, WIDTH, WIDTH);
+        Path2D[] paths = {line(0, 0, 1, 0), line(0, 0, 0.6, 0.8), arc(0, 90)};
+        for (Path2D path : paths) {
+            assertEquals(WIDTH, width(sweep(circle, path), path), 0.01*WIDTH);
+        }
+    }
+
+    @Test
+    void squareAperturesAreNotRecognized() {
+        Shape square = new Rectangle2D.Double(-WIDTH/2, -WIDTH/2, WIDTH, WIDTH);
+        Path2D[] paths = {line(0, 0, 1, 0), line(0, 0, 0, 1), line(0, 0, 0.6, 0.8), arc(0, 90)};
+        for (Path2D path : paths) {
+            assertEquals(0, width(sweep(square, path), path), 0);
+        }
+    }
+
+    @Test
+    void rectangularAperturesAreNotRecognized() {
+        Shape rectangle = new Rectangle2D.Double(-WIDTH/2, -WIDTH/4, WIDTH, WIDTH/2);
+        Path2D path = line(0, 0, 0.5, 0.5);
+        assertEquals(0, width(sweep(rectangle, path), path), 0);
+    }
+
+    @Test
+    void polygonAperturesAreNotRecognized() {
+        for (int sides : new int[] {6, 8, 10}) {
+            for (double rotation : new double[] {0, Math.PI/sides/2, Math.PI/sides}) {
+                Shape polygon = polygon(sides, WIDTH/2, rotation);
+                Path2D[] paths = {line(0, 0, 1, 0), line(0, 0, 0.6, 0.8), arc(0, 90)};
+                for (Path2D path : paths) {
+                    assertEquals(0, width(sweep(polygon, path), path), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    void squareCapsAreNotRecognized() {
+        Path2D path = line(0, 0, 2, 1);
+        Area area = new Area(new BasicStroke((float) WIDTH, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER)
+                .createStrokedShape(path));
+        assertEquals(0, width(area, path), 0);
+    }
+}
@@ -0,0 +1,72 @@
+package gerberViewer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the R-tree's queries against testing every item's bounds
+ */
+class SpatialIndexTest {
+
+    @Test
+    void queryMatchesBruteForce() {
+        Random random = new Random(3);
+        //Mostly small items, like pads and trace segments, with the odd large pour
+        for (int size : new int[] {0, 1, 2, 15, 16, 17, 255, 256, 257, 5000}) {
+            List<Rectangle2D> items = new ArrayList<>();
+            for (int i=0; i<size; i++) {
+                double w = random.nextInt(20) == 0 ? 50*random.nextDouble() : random.nextDouble();
+                double h = random.nextInt(20) == 0 ? 50*random.nextDouble() : random.nextDouble();
+                //Some degenerate items with no width or height
+                if (random.nextInt(10) == 0) {
+                    w = 0;
+                }
+                items.add(new Rectangle2D.Double(100*random.nextDouble(), 100*random.nextDouble(), w, h));
+            }
+            SpatialIndex<Rectangle2D> index = new SpatialIndex<>(items, (r) -> r);
+            assertEquals(size, index.size());
+            for (int i=0; i<size; i++) {
+                assertSame(items.get(i), index.get(i));
+                Rectangle2D bounds = index.getBounds(i);
+                assertEquals(items.get(i).getMinX(), bounds.getMinX(), 1e-12);
+                assertEquals(items.get(i).getMinY(), bounds.getMinY(), 1e-12);
+                assertEquals(items.get(i).getMaxX(), bounds.getMaxX(), 1e-12);
+                assertEquals(items.get(i).getMaxY(), bounds.getMaxY(), 1e-12);
+            }
+            for (int q=0; q<200; q++) {
+                Rectangle2D region = new Rectangle2D.Double(120*random.nextDouble() - 10, 
+                        120*random.nextDouble() - 10, 30*random.nextDouble(), 30*random.nextDouble());
+                assertArrayEquals(bruteForceQuery(items, region), index.query(region));
+            }
+        }
+    }
+
+    @Test
+    void touchingBoundsIntersect() {
+        List<Rectangle2D> items = List.of(new Rectangle2D.Double(0, 0, 1, 1), new Rectangle2D.Double(2, 0, 1, 1));
+        SpatialIndex<Rectangle2D> index = new SpatialIndex<>(items, (r) -> r);
+        assertArrayEquals(new int[] {0, 1}, index.query(new Rectangle2D.Double(1, 0.5, 1, 0)));
+        assertArrayEquals(new int[0], index.query(new Rectangle2D.Double(1.25, 0, 0.5, 5)));
+    }
+
+    private static int[] bruteForceQuery(List<Rectangle2D> items, Rectangle2D region) {
+        int[] found = new int[items.size()];
+        int count = 0;
+        for (int i=0; i<items.size(); i++) {
+            Rectangle2D r = items.get(i);
+            if (r.getMaxX() >= region.getMinX() && r.getMinX() <= region.getMaxX() &&
+                    r.getMaxY() >= region.getMinY() && r.getMinY() <= region.getMaxY()) {
+                found[count++] = i;
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+}
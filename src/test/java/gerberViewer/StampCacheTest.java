@@ -0,0 +1,164 @@
+package gerberViewer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import gerberFileReader.Polarity;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that stamping repeated shapes gives nearly the same mask as filling them, and that the
+ * cache keeps count of the memory its stamps use
+ */
+class StampCacheTest {
+    private static final int MASK_SIZE = 160;
+    //Pixels per object unit, object positions are multiples of 0.01 units so they fall on tenths
+    //of a pixel and exercise every sub-pixel offset
+    private static final double SCALE = 10;
+
+    private static List<LayerObject> createPads(GeometryStore geometry) {
+        List<LayerObject> pads = new ArrayList<>();
+        for (int i=0; i<100; i++) {
+            double x = 0.5 + (i%10)*1.53;
+            double y = 0.5 + (i/10)*1.47;
+            if (i%2 == 0) {
+                geometry.add(new Ellipse2D.Double(x, y, 0.6, 0.6));
+            }
+            else {
+                geometry.add(new Rectangle2D.Double(x, y, 0.8, 0.35));
+            }
+        }
+        geometry.trim();
+        for (int i=0; i<geometry.size(); i++) {
+            pads.add(new LayerObject(geometry, i, Polarity.DARK, LayerAttributes.EMPTY, "", "", null, 0));
+        }
+        return pads;
+    }
+
+    private static GeometryStore createGeometry() {
+        return new GeometryStore(1e-4, new Rectangle2D.Double(0, 0, 16, 16));
+    }
+
+    @Test
+    void stampedMatchesFilled() {
+        GeometryStore geometry = createGeometry();
+        List<LayerObject> pads = createPads(geometry);
+        AffineTransform transform = AffineTransform.getScaleInstance(SCALE, SCALE);
+
+        BufferedImage filled = CoverageMask.create(MASK_SIZE, MASK_SIZE);
+        Graphics2D g2 = filled.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.setColor(Color.WHITE);
+        for (LayerObject pad : pads) {
+            g2.fill(transform.createTransformedShape(pad.getShape()));
+        }
+        g2.dispose();
+
+        StampCache stampCache = new StampCache(Long.MAX_VALUE);
+        BufferedImage stamped = CoverageMask.create(MASK_SIZE, MASK_SIZE);
+        for (LayerObject pad : pads) {
+            assertTrue(stampCache.draw(stamped, pad, transform, true));
+        }
+
+        //A stamp's origin is rounded to the nearest quarter of a pixel so its edges can move by
+        //up to an eighth of a pixel in each direction. That changes the coverage of the pixels
+        //along the edges a little but on average, over the whole mask, the difference is only
+        //about 1.5/255 per pixel.
+        long totalDifference = 0;
+        int maxDifference = 0;
+        int coveredPixels = 0;
+        for (int y=0; y<MASK_SIZE; y++) {
+            for (int x=0; x<MASK_SIZE; x++) {
+                int f = filled.getRaster().getSample(x, y, 0);
+                int s = stamped.getRaster().getSample(x, y, 0);
+                totalDifference += Math.abs(f - s);
+                maxDifference = Math.max(maxDifference, Math.abs(f - s));
+                if (f > 0) {
+                    coveredPixels++;
+                }
+            }
+        }
+        assertTrue(coveredPixels > 1000);
+        assertTrue((double) totalDifference/(MASK_SIZE*MASK_SIZE) < 2);
+        assertTrue(maxDifference < 64);
+    }
+
+    @Test
+    void unstampedShapesAreFilled() {
+        GeometryStore geometry = createGeometry();
+        geometry.add(new Ellipse2D.Double(1, 1, 0.6, 0.6));
+        geometry.add(new Ellipse2D.Double(3, 3, 0.6, 0.6));
+        geometry.add(new Ellipse2D.Double(1, 5, 12, 12));
+        geometry.trim();
+        StampCache stampCache = new StampCache(Long.MAX_VALUE);
+        BufferedImage mask = CoverageMask.create(MASK_SIZE, MASK_SIZE);
+        AffineTransform transform = AffineTransform.getScaleInstance(SCALE, SCALE);
+        //Too few instances to be worth stamping
+        assertFalse(stampCache.draw(mask, new LayerObject(geometry, 0, Polarity.DARK, LayerAttributes.EMPTY,
+                "", "", null, 0), transform, true));
+        assertEquals(0, stampCache.sizeInBytes());
+    }
+
+    @Test
+    void memoryIsCounted() throws Exception {
+        GeometryStore geometry = createGeometry();
+        List<LayerObject> pads = createPads(geometry);
+        StampCache stampCache = new StampCache(Long.MAX_VALUE);
+        //Draw at several scales from several threads at once so that stamps are created concurrently
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> draws = new ArrayList<>();
+            for (int t=0; t<8; t++) {
+                double scale = SCALE + t%4;
+                draws.add(executor.submit(() -> {
+                    BufferedImage mask = CoverageMask.create(2*MASK_SIZE, 2*MASK_SIZE);
+                    AffineTransform transform = AffineTransform.getScaleInstance(scale, scale);
+                    for (LayerObject pad : pads) {
+                        stampCache.draw(mask, pad, transform, true);
+                    }
+                }));
+            }
+            for (Future<?> draw : draws) {
+                draw.get();
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+        assertTrue(stampCache.sizeInBytes() > 0);
+        //Removing every stamp of the geometry must bring the count back to zero
+        stampCache.remove(geometry);
+        assertEquals(0, stampCache.sizeInBytes());
+    }
+
+    @Test
+    void clearsWhenFull() {
+        GeometryStore geometry = createGeometry();
+        List<LayerObject> pads = createPads(geometry);
+        StampCache stampCache = new StampCache(2000);
+        BufferedImage mask = CoverageMask.create(MASK_SIZE, MASK_SIZE);
+        for (int scale=5; scale<=10; scale++) {
+            AffineTransform transform = AffineTransform.getScaleInstance(scale, scale);
+            for (LayerObject pad : pads) {
+                stampCache.draw(mask, pad, transform, true);
+                assertTrue(stampCache.sizeInBytes() <= 2000);
+            }
+        }
+        assertTrue(stampCache.sizeInBytes() > 0);
+        stampCache.clear();
+        assertEquals(0, stampCache.sizeInBytes());
+    }
+}
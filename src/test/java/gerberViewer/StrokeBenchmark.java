@@ -0,0 +1,121 @@
+package gerberViewer;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import gerberFileReader.GerberFileReader;
+import gerberFileReader.Polarity;
+
+/**
+ * Compares the time taken to render Gerber layers by filling the outline of every object with the
+ * time taken when traces are stroked along their center-lines instead. Each layer is rendered to
+ * fit a square coverage mask. Usage: StrokeBenchmark [-size pixels] file-or-directory...
+ */
+public class StrokeBenchmark {
+    private static final int RENDERS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int size = 2048;
+        List<File> files = new ArrayList<>();
+        for (int i=0; i<args.length; i++) {
+            if (args[i].equals("-size") && i + 1 < args.length) {
+                size = Integer.parseInt(args[++i]);
+                continue;
+            }
+            File file = new File(args[i]);
+            if (file.isDirectory()) {
+                for (File child : file.listFiles()) {
+                    if (child.getName().toLowerCase().endsWith(".gbr")) {
+                        files.add(child);
+                    }
+                }
+            }
+            else {
+                files.add(file);
+            }
+        }
+        if (files.isEmpty()) {
+            System.out.println("Usage: StrokeBenchmark [-size pixels] file-or-directory...");
+            return;
+        }
+
+        long totalFill = 0;
+        long totalStroke = 0;
+        System.out.println("File, Objects, Stroked objects, Fill ms, Stroke ms, Speedup");
+        for (File file : files) {
+            GerberFileReader reader = new GerberFileReader(file);
+            CompletableFuture<Void> parsed = new CompletableFuture<>();
+            reader.parseFileInBackground((p) -> {}, () -> parsed.complete(null),
+                    (ex) -> parsed.completeExceptionally(ex));
+            parsed.join();
+            GerberLayer layer = GerberLayer.from(reader, file, null, 
+                    GerberHeader.read(file).getCoordinateDecimals(), new AttributePool());
+            Rectangle2D bounds = layer.getBounds();
+            if (bounds == null) {
+                continue;
+            }
+            double scale = size/Math.max(bounds.getWidth(), bounds.getHeight());
+            AffineTransform transform = AffineTransform.getScaleInstance(scale, -scale);
+            transform.translate(-bounds.getMinX(), -bounds.getMaxY());
+
+            int stroked = 0;
+            for (LayerObject go : layer.getObjects()) {
+                if (go.getStrokeWidth() > 0) {
+                    stroked++;
+                }
+            }
+            //Take the best of several renders so that the first render doesn't pay for warming up
+            long fillTime = Long.MAX_VALUE;
+            long strokeTime = Long.MAX_VALUE;
+            for (int i=0; i<RENDERS; i++) {
+                fillTime = Math.min(fillTime, render(layer, transform, size, false));
+                strokeTime = Math.min(strokeTime, render(layer, transform, size, true));
+            }
+            System.out.println(String.format("%s, %d, %d, %.1f, %.1f, %.1fx", file.getName(),
+                    layer.getObjects().size(), stroked, fillTime/1e6, strokeTime/1e6, (double) fillTime/strokeTime));
+            totalFill += fillTime;
+            totalStroke += strokeTime;
+        }
+        System.out.println(String.format("Total: fill %.1f ms, stroke %.1f ms, %.1fx faster",
+                totalFill/1e6, totalStroke/1e6, (double) totalFill/totalStroke));
+    }
+
+    /**
+     * Renders a layer into a new coverage mask
+     * @return the time taken in nanoseconds
+     */
+    private static long render(GerberLayer layer, AffineTransform transform, int size, boolean stroke) {
+        BufferedImage mask = CoverageMask.create(size, size);
+        long start = System.nanoTime();
+        Graphics2D fillScr = mask.createGraphics();
+        fillScr.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        Graphics2D strokeScr = mask.createGraphics();
+        strokeScr.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        strokeScr.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        strokeScr.transform(transform);
+        for (LayerObject go : layer.getObjects()) {
+            Color color = go.getPolarity() == Polarity.DARK ? Color.WHITE : Color.BLACK;
+            if (stroke && go.getStrokeWidth() > 0) {
+                strokeScr.setColor(color);
+                strokeScr.setStroke(new BasicStroke((float) go.getStrokeWidth(),
+                        BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+                strokeScr.draw(go.getStrokePath());
+            }
+            else {
+                fillScr.setColor(color);
+                fillScr.fill(transform.createTransformedShape(go.getShape()));
+            }
+        }
+        fillScr.dispose();
+        strokeScr.dispose();
+        return System.nanoTime() - start;
+    }
+}